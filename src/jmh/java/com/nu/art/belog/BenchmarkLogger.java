@@ -0,0 +1,55 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.BeConfig.LoggerConfig;
+import com.nu.art.belog.BeConfig.Rule;
+import com.nu.art.belog.consts.LogLevel;
+
+/**
+ * A client that only keeps a reference to the last message, so benchmarks measure belog itself rather than any output.
+ */
+public class BenchmarkLogger
+	extends LoggerClient<BenchmarkLogger.Config_BenchmarkLogger> {
+
+	static final LoggerDescriptor<Config_BenchmarkLogger, BenchmarkLogger> Descriptor = new LoggerDescriptor<>(Config_BenchmarkLogger.KEY, Config_BenchmarkLogger.class, BenchmarkLogger.class);
+
+	private String lastMessage;
+
+	static BeConfig createConfig(Rule... rules) {
+		BeLogged.getInstance().registerDescriptor(Descriptor);
+		return new BeConfig().setRules(rules).setLoggersConfig(new Config_BenchmarkLogger().setKey(Config_BenchmarkLogger.KEY));
+	}
+
+	@Override
+	protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+		lastMessage = message;
+	}
+
+	public static class Config_BenchmarkLogger
+		extends LoggerConfig {
+
+		public static final String KEY = BenchmarkLogger.class.getSimpleName();
+
+		public Config_BenchmarkLogger() {
+			super(KEY);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the selected benchmarks once per thread count, with the GC profiler so the allocation rate per log call is tracked as well.
+ * <p>
+ * Usage: BenchmarkRunner [include regex] [reports folder]
+ */
+public class BenchmarkRunner {
+
+	private static final int[] ThreadCounts = {
+		1,
+		4,
+		16
+	};
+
+	public static void main(String[] args)
+		throws RunnerException {
+		String include = args.length > 0 ? args[0] : ".*";
+		File reportsFolder = new File(args.length > 1 ? args[1] : "build/reports/jmh");
+		if (!reportsFolder.exists() && !reportsFolder.mkdirs())
+			throw new RunnerException("Cannot create reports folder: " + reportsFolder.getAbsolutePath());
+
+		for (int threads : ThreadCounts) {
+			Options options = new OptionsBuilder().include(include)
+			                                      .threads(threads)
+			                                      .addProfiler(GCProfiler.class)
+			                                      .resultFormat(ResultFormatType.JSON)
+			                                      .result(new File(reportsFolder, "results-" + threads + "-threads.json").getAbsolutePath())
+			                                      .build();
+			new Runner(options).run();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.consts.LogLevel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DefaultLogComposer, both the String and the buffer flavors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComposerBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class SharedComposer {
+
+		final DefaultLogComposer composer = new DefaultLogComposer();
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadBuffer {
+
+		final LogBuffer buffer = new LogBuffer();
+	}
+
+	@Benchmark
+	public String composeEntry(SharedComposer state) {
+		return state.composer.composeEntry(System.currentTimeMillis(), LogLevel.Info, Thread.currentThread(), "ComposerBenchmark", "benchmarking the composer", null);
+	}
+
+	@Benchmark
+	public int composeEntryToBuffer(SharedComposer state, ThreadBuffer buffer) {
+		buffer.buffer.reset();
+		state.composer.composeEntry(buffer.buffer, System.currentTimeMillis(), LogLevel.Info, Thread.currentThread(), "ComposerBenchmark", "benchmarking the composer", null);
+		return buffer.buffer.size();
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.BeConfig.Rule;
+import com.nu.art.belog.loggers.FileLogger.Config_FileLogger;
+import com.nu.art.belog.loggers.FileLogger.OutputMode;
+import com.nu.art.core.tools.FileTools;
+import com.nu.art.core.tools.SizeTools;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileLogger end to end, with segments small enough that rotation is part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileLoggerBenchmark {
+
+	@Param( {
+		        "Stream",
+		        "Channel",
+		        "Mapped"
+	        })
+	public OutputMode output;
+
+	@Param( {
+		        "1",
+		        "256"
+	        })
+	public int batchSize;
+
+	private File folder;
+	private Logger logger;
+
+	@Setup
+	public void setup() {
+		folder = new File(System.getProperty("java.io.tmpdir"), "belog-benchmark-" + System.nanoTime());
+		Config_FileLogger config = new Config_FileLogger().setFolder(folder.getAbsolutePath())
+		                                                  .setFileName("benchmark")
+		                                                  .setSize(SizeTools.MegaByte)
+		                                                  .setCount(3)
+		                                                  .setBatchSize(batchSize)
+		                                                  .setOutput(output);
+		config.setKey("benchmark-file");
+
+		BeLogged.getInstance().setConfig(new BeConfig().setRules(new Rule().setLoggerKeys("benchmark-file")).setLoggersConfig(config));
+		logger = BeLogged.getInstance().getLogger(FileLoggerBenchmark.class);
+	}
+
+	@TearDown
+	public void tearDown()
+		throws IOException {
+		// disposes the file logger, which closes its files before they are deleted
+		BeLogged.getInstance().setConfig(new BeConfig());
+
+		File[] files = folder.listFiles();
+		if (files != null)
+			for (File file : files) {
+				FileTools.delete(file);
+			}
+		FileTools.delete(folder);
+	}
+
+	@Benchmark
+	public void logInfoWithParams() {
+		logger.logInfo("benchmarking the file logger: %s, %d", "param", 42);
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.BeConfig.Rule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of a Logger call, from the application thread down to a client that does nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerBenchmark {
+
+	private Logger logger;
+
+	@Setup
+	public void setup() {
+		BeLogged.getInstance().setConfig(BenchmarkLogger.createConfig(new Rule().setLoggerKeys(BenchmarkLogger.Config_BenchmarkLogger.KEY)));
+		logger = BeLogged.getInstance().getLogger(LoggerBenchmark.class);
+	}
+
+	@Benchmark
+	public void logInfo() {
+		logger.logInfo("benchmarking a message without params");
+	}
+
+	@Benchmark
+	public void logInfoWithParams() {
+		logger.logInfo("benchmarking a message with params: %s, %d", "param", 42);
+	}
+
+	@Benchmark
+	public void logFilteredOut() {
+		logger.logVerbose("benchmarking a message that is filtered out: %s, %d", "param", 42);
+	}
+}
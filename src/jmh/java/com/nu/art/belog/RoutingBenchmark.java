@@ -0,0 +1,90 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.BeConfig.Rule;
+import com.nu.art.belog.consts.LogLevel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BeLogged.log rule routing with N rules, where only the last rule matches the tag.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+	@Param( {
+		        "1",
+		        "10",
+		        "50"
+	        })
+	public int rulesCount;
+
+	private BeLogged beLogged;
+	private Rule[] rules;
+	private Map<String, LoggerClient> clients;
+
+	@Setup
+	public void setup() {
+		rules = new Rule[rulesCount];
+		for (int i = 0; i < rulesCount - 1; i++) {
+			rules[i] = new Rule().setTag("other-tag-" + i + ".*").setLoggerKeys(BenchmarkLogger.Config_BenchmarkLogger.KEY);
+		}
+		rules[rulesCount - 1] = new Rule().setTag("routed-.*").setLoggerKeys(BenchmarkLogger.Config_BenchmarkLogger.KEY);
+
+		beLogged = BeLogged.getInstance();
+		beLogged.setConfig(BenchmarkLogger.createConfig(rules));
+
+		clients = new HashMap<>();
+		clients.put(BenchmarkLogger.Config_BenchmarkLogger.KEY, beLogged.getClient(BenchmarkLogger.Config_BenchmarkLogger.KEY));
+	}
+
+	@Benchmark
+	public void log() {
+		beLogged.log(LogLevel.Info, "routed-tag", "benchmarking rule routing", null, null);
+	}
+
+	/**
+	 * What a routing cache miss costs, e.g. the first entry of a tag after a config change.
+	 */
+	@Benchmark
+	public LoggerClient[] resolveRoute() {
+		return new RoutingTable(rules, clients, beLogged.getMetrics()).route(LogLevel.Info, "routed-tag", Thread.currentThread().getName());
+	}
+}
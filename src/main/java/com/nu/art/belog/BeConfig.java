@@ -3,8 +3,6 @@ package com.nu.art.belog;
 import com.nu.art.belog.consts.LogLevel;
 import com.nu.art.core.tools.ArrayTools;
 
-import java.util.regex.Pattern;
-
 public class BeConfig {
 
 	public Rule[] rules = {};
@@ -27,6 +25,14 @@ public class BeConfig {
 		                     .setLoggersConfig(ArrayTools.appendElements(this.configs, config.configs));
 	}
 
+	/**
+	 * What the rate limit and sampling of a rule are counted for.
+	 */
+	public enum LimitScope {
+		Tag,
+		Thread,
+	}
+
 	public static class Rule {
 
 		String tag;
@@ -36,8 +42,9 @@ public class BeConfig {
 
 		String[] loggerKeys;
 
-		transient Pattern _tag;
-		transient Pattern _thread;
+		int maxPerSecond;
+		int sampleRate;
+		LimitScope limitPer = LimitScope.Tag;
 
 		public Rule setLoggerKeys(String... loggerKeys) {
 			this.loggerKeys = loggerKeys;
@@ -63,6 +70,31 @@ public class BeConfig {
 			this.maxLevel = maxLevel;
 			return this;
 		}
+
+		/**
+		 * @param maxPerSecond The entries the rule routes per second, for each tag or thread, see {@link #setLimitPer(LimitScope)}. Entries
+		 *                     beyond it are suppressed and counted, and a summary of them is logged with the next entry let through, or by
+		 *                     a background thread if none follows, at most once every 10 seconds and once more when the config changes. 0
+		 *                     for no limit.
+		 */
+		public Rule setMaxPerSecond(int maxPerSecond) {
+			this.maxPerSecond = maxPerSecond;
+			return this;
+		}
+
+		/**
+		 * @param sampleRate Only one in every sampleRate entries is routed by the rule, the rest are suppressed and counted like entries beyond
+		 *                   the rate limit. 0 or 1 to route them all.
+		 */
+		public Rule setSampleRate(int sampleRate) {
+			this.sampleRate = sampleRate;
+			return this;
+		}
+
+		public Rule setLimitPer(LimitScope limitPer) {
+			this.limitPer = limitPer;
+			return this;
+		}
 	}
 
 	public static abstract class LoggerConfig {
@@ -71,11 +103,28 @@ public class BeConfig {
 		public boolean isDefault;
 		public String key;
 
+		/**
+		 * Entries are handed over to a queue of the given size and written by a thread of the client's own, so a slow client never
+		 * delays the logging thread. Entries are dropped while the queue is full.
+		 */
+		public boolean async;
+		public int asyncQueueSize = 1024;
+
 		protected LoggerConfig(String type) {this.type = type;}
 
 		public LoggerConfig setKey(String key) {
 			this.key = key;
 			return this;
 		}
+
+		public LoggerConfig setAsync(boolean async) {
+			this.async = async;
+			return this;
+		}
+
+		public LoggerConfig setAsyncQueueSize(int asyncQueueSize) {
+			this.asyncQueueSize = asyncQueueSize;
+			return this;
+		}
 	}
 }
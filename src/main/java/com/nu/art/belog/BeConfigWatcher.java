@@ -0,0 +1,167 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Watches a JSON config file, and applies it to {@link BeLogged} whenever it changes.
+ * <p>
+ * The file is read and applied on the watcher's own thread, logging threads keep on logging with the previous config until the new one
+ * is published. A config that cannot be parsed or applied is reported and ignored, the previous one remains in effect.
+ */
+public final class BeConfigWatcher {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Editors tend to save a file in a few steps, the events of a save are folded into a single reload.
+	 */
+	private static final long SettleDelay = 200;
+
+	private final BeLogged beLogged;
+	private final Path configFile;
+
+	private volatile boolean running;
+	private WatchService watchService;
+	private Thread watcherThread;
+
+	// owned by the watcher thread once started
+	private String appliedConfig;
+
+	public BeConfigWatcher(File configFile) {
+		this(BeLogged.getInstance(), configFile);
+	}
+
+	public BeConfigWatcher(BeLogged beLogged, File configFile) {
+		this.beLogged = beLogged;
+		this.configFile = configFile.getAbsoluteFile().toPath();
+	}
+
+	/**
+	 * Applies the current content of the config file, and starts watching it for changes.
+	 *
+	 * @throws IOException If the file cannot be read or watched, a config that cannot be applied is thrown as is.
+	 */
+	public synchronized void start()
+		throws IOException {
+		if (running)
+			return;
+
+		applyConfig(readConfig());
+
+		watchService = FileSystems.getDefault().newWatchService();
+		configFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+		running = true;
+		watcherThread = new Thread(watcher, "BeLogged config watcher");
+		watcherThread.setDaemon(true);
+		watcherThread.start();
+	}
+
+	public synchronized void stop() {
+		if (!running)
+			return;
+
+		running = false;
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			System.err.println("BeConfigWatcher: error closing the watch service: " + e);
+		}
+	}
+
+	private final Runnable watcher = new Runnable() {
+		@Override
+		public void run() {
+			while (running) {
+				try {
+					if (!awaitChange())
+						continue;
+
+					// let the writes settle, and drop the events they produced in the meantime
+					Thread.sleep(SettleDelay);
+					for (WatchKey key = watchService.poll(); key != null; key = watchService.poll()) {
+						key.pollEvents();
+						key.reset();
+					}
+				} catch (InterruptedException | ClosedWatchServiceException e) {
+					break;
+				}
+
+				reload();
+			}
+		}
+	};
+
+	/**
+	 * @return true if the config file was changed.
+	 */
+	private boolean awaitChange()
+		throws InterruptedException {
+		WatchKey key = watchService.take();
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || configFile.getFileName().equals(event.context());
+		}
+
+		if (!key.reset()) {
+			System.err.println("BeConfigWatcher: " + configFile.getParent() + " can no longer be watched");
+			running = false;
+		}
+
+		return changed;
+	}
+
+	private void reload() {
+		try {
+			applyConfig(readConfig());
+		} catch (NoSuchFileException e) {
+			// removed, or in the middle of being replaced
+		} catch (Throwable t) {
+			System.err.println("BeConfigWatcher: ignoring config " + configFile + ", the previous config remains in effect");
+			t.printStackTrace();
+		}
+	}
+
+	private String readConfig()
+		throws IOException {
+		return new String(Files.readAllBytes(configFile), UTF_8);
+	}
+
+	private void applyConfig(String config) {
+		if (config.equals(appliedConfig))
+			return;
+
+		beLogged.setConfig(config);
+		appliedConfig = config;
+	}
+}
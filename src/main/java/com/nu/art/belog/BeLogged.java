@@ -26,18 +26,20 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
 import com.nu.art.belog.BeConfig.LoggerConfig;
 import com.nu.art.belog.BeConfig.Rule;
+import com.nu.art.belog.RoutingTable.Route;
+import com.nu.art.belog.RoutingTable.SuppressedSummary;
+import com.nu.art.belog.TagContext.RepeatedEntry;
 import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.belog.loggers.AsyncLoggerClient;
 import com.nu.art.belog.loggers.FileLogger.FileLoggerDescriptor;
 import com.nu.art.belog.loggers.JavaLogger.JavaLoggerDescriptor;
 import com.nu.art.core.exceptions.runtime.BadImplementationException;
 import com.nu.art.core.exceptions.runtime.ImplementationMissingException;
 import com.nu.art.core.interfaces.Condition;
-import com.nu.art.core.interfaces.Getter;
 import com.nu.art.core.interfaces.Serializer;
 import com.nu.art.core.replacer.Replacer;
 import com.nu.art.core.tools.ArrayTools;
 import com.nu.art.core.tools.StreamTools;
-import com.nu.art.core.utils.SynchronizedObject;
 import com.nu.art.reflection.tools.ART_Tools;
 import com.nu.art.reflection.tools.ReflectiveTools;
 
@@ -46,16 +48,40 @@ import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class BeLogged {
 
+	private static final String MetricsType_BeLogged = "BeLogged";
+	private static final String MetricsType_LoggerClient = "LoggerClient";
+
+	/**
+	 * The max time a config change waits for logging threads to be done with the clients it removes.
+	 */
+	private static final long DrainTimeout = 5000;
+
+	/**
+	 * How often the rule limiters are checked for suppressed entries no entry reported, each still reports at most once per its interval.
+	 */
+	private static final long SuppressedFlushInterval = 1000;
+
 	private static BeLogged INSTANCE;
 
 	public static synchronized BeLogged getInstance() {
@@ -67,17 +93,18 @@ public final class BeLogged {
 
 	private LogLevel minLogLevel = LogLevel.Verbose;
 	private LogLevel maxLogLevel = LogLevel.Assert;
-	private SynchronizedObject<HashSet<String>> syncLoggerSet = new SynchronizedObject<>(new Getter<HashSet<String>>() {
-		@Override
-		public HashSet<String> get() {
-			return new HashSet<>();
-		}
-	});
+	private volatile boolean deferredFormatting;
+	private volatile long repeatWindow;
+	// reports the collapsed repeats and the suppressed entries no other entry followed, created once either is needed
+	private ScheduledExecutorService flusher;
+	private ScheduledFuture<?> repeatsFlush;
+	private ScheduledFuture<?> suppressedFlush;
 
 	private final Map<String, LoggerDescriptor<?, ? extends LoggerClient<? extends LoggerConfig>>> descriptors = new HashMap<>();
 	private final HashMap<String, String> configParams = new HashMap<>();
-	private final Map<String, LoggerClient> logClients = new ConcurrentHashMap<>();
-	private Rule[] rules = {};
+	private final ConcurrentHashMap<String, TagContext> tagContexts = new ConcurrentHashMap<>();
+	private final BeLoggedMetrics metrics = new BeLoggedMetrics();
+	private volatile RoutingTable routingTable = new RoutingTable(new Rule[0], Collections.<String, LoggerClient>emptyMap(), metrics);
 	private Serializer<Object, String> serializer = new Serializer<Object, String>() {
 
 		private Gson gson = new GsonBuilder().registerTypeAdapter(LoggerConfig.class, new JsonDeserializer<LoggerConfig>() {
@@ -137,14 +164,161 @@ public final class BeLogged {
 	private BeLogged() {
 		registerDescriptor(new FileLoggerDescriptor());
 		registerDescriptor(new JavaLoggerDescriptor());
+		MetricsRegistry.register(MetricsType_BeLogged, null, metrics);
 	}
 
-	public void setMinLogLevel(LogLevel minLogLevel) {
+	public synchronized void setMinLogLevel(LogLevel minLogLevel) {
 		this.minLogLevel = minLogLevel;
+		updateTagContexts();
 	}
 
-	public void setMaxLogLevel(LogLevel maxLogLevel) {
+	public synchronized void setMaxLogLevel(LogLevel maxLogLevel) {
 		this.maxLogLevel = maxLogLevel;
+		updateTagContexts();
+	}
+
+	final TagContext getTagContext(String tag) {
+		TagContext tagContext = tagContexts.get(tag);
+		if (tagContext != null)
+			return tagContext;
+
+		return createTagContext(tag);
+	}
+
+	/**
+	 * Once per tag: the levels are computed and the context is registered under the config lock, so a config or level change either
+	 * happens before and is part of the computed levels, or after and updates the registered context.
+	 */
+	private synchronized TagContext createTagContext(String tag) {
+		TagContext tagContext = tagContexts.get(tag);
+		if (tagContext != null)
+			return tagContext;
+
+		tagContext = new TagContext(tag);
+		updateTagContext(tagContext, routingTable);
+		tagContexts.put(tag, tagContext);
+		return tagContext;
+	}
+
+	/**
+	 * Called under the config lock, along with every change of the routing table or the levels.
+	 */
+	private void updateTagContexts() {
+		RoutingTable routingTable = this.routingTable;
+		for (TagContext tagContext : tagContexts.values()) {
+			updateTagContext(tagContext, routingTable);
+		}
+	}
+
+	private void updateTagContext(TagContext tagContext, RoutingTable routingTable) {
+		int globalLevels = 0;
+		for (int level = minLogLevel.ordinal(); level <= maxLogLevel.ordinal(); level++) {
+			globalLevels |= 1 << level;
+		}
+
+		tagContext.setLoggableLevels(globalLevels & routingTable.getLoggableLevels(tagContext.tag));
+	}
+
+	/**
+	 * When enabled, the message format and a snapshot of its params travel with the entry to every client, and clients that log on their
+	 * own thread, like the {@link com.nu.art.belog.loggers.FileLogger}, format it over there instead of on the calling thread.
+	 * <p>
+	 * Params of immutable types are passed as is, mutable numbers, dates and calendars are copied, and any other param is snapshotted with
+	 * {@link String#valueOf(Object)} on the calling thread.
+	 */
+	public void setDeferredFormatting(boolean deferredFormatting) {
+		this.deferredFormatting = deferredFormatting;
+	}
+
+	/**
+	 * When enabled, consecutive entries of a tag with the same level and message template are collapsed: only the first within the window
+	 * is routed, and the rest are counted and reported as a single "last message repeated N times" entry. The report is logged with the
+	 * next entry of the tag that is not a repeat, or the first repeat after the window elapsed. Repeats that no other entry followed are
+	 * reported by a background thread once their window elapsed, and pending reports are logged before the config or the window changes.
+	 * <p>
+	 * Repeats are dropped before they are routed or formatted.
+	 *
+	 * @param windowMillis The time since the last entry that was let through within which an identical entry is a repeat, 0 to disable.
+	 */
+	public synchronized void setRepeatWindow(long windowMillis) {
+		if (repeatWindow == windowMillis)
+			return;
+
+		this.repeatWindow = windowMillis;
+		if (repeatsFlush != null) {
+			repeatsFlush.cancel(false);
+			repeatsFlush = null;
+		}
+
+		// the runs collapsed with the previous window are reported as is
+		flushRepeats(0);
+		if (windowMillis == 0)
+			return;
+
+		repeatsFlush = getFlusher().scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				flushRepeats(repeatWindow);
+			}
+		}, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private ScheduledExecutorService getFlusher() {
+		if (flusher != null)
+			return flusher;
+
+		return flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "BeLogged flusher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Logs the summaries of the entries suppressed by rule limits that no entry let through reported, once their report interval is over,
+	 * or all of them when forced.
+	 */
+	final void flushSuppressed(boolean force) {
+		RoutingTable routingTable = enterRoutingTable();
+		try {
+			List<SuppressedSummary> summaries = routingTable.takeSuppressedSummaries(force);
+			if (summaries.isEmpty())
+				return;
+
+			long now = System.currentTimeMillis();
+			Thread thread = Thread.currentThread();
+			for (SuppressedSummary summary : summaries) {
+				deliver(summary.clients, now, LogLevel.Warning, thread, summary.tag, summary.message, null, null, null);
+			}
+		} finally {
+			routingTable.exit();
+		}
+	}
+
+	/**
+	 * Logs the summaries of the collapsed runs whose window elapsed, or of every run with a window of 0.
+	 */
+	final void flushRepeats(long windowMillis) {
+		long now = System.currentTimeMillis();
+		for (TagContext tagContext : tagContexts.values()) {
+			RepeatedEntry repeated = tagContext.flushRepeats(now, windowMillis);
+			if (repeated == null)
+				continue;
+
+			RoutingTable routingTable = enterRoutingTable();
+			try {
+				dispatch(routingTable, repeated.level, tagContext.tag, getRepeatSummary(repeated), null, null, null);
+			} finally {
+				routingTable.exit();
+			}
+		}
+	}
+
+	private static String getRepeatSummary(RepeatedEntry repeated) {
+		return "last message repeated " + repeated.repeats + " times";
 	}
 
 	public final Serializer<Object, String> getSerializer() {
@@ -168,14 +342,45 @@ public final class BeLogged {
 		setConfig((BeConfig) serializer.deserialize(configAsString, BeConfig.class));
 	}
 
+	/**
+	 * Applies the config as a whole: the clients and the compiled rules are published together with a single write, so logging threads
+	 * see either the previous config or this one. Clients that are no longer in use are disposed once no thread is routing to them.<br>
+	 * If the config cannot be applied, e.g. a rule has an invalid pattern, the previous one remains in effect.
+	 */
 	public final void setConfig(BeConfig _config) {
+		ArrayList<LoggerClient> removedClients = new ArrayList<>();
+		RoutingTable previous = swapConfig(_config, removedClients);
+
+		// removed clients are disposed only once no thread is routing to them anymore, waited for outside of the lock so a slow logging
+		// thread does not hold back other config changes
+		if (!previous.awaitQuiescence(DrainTimeout))
+			System.err.println("BeLogged: logging threads are still routing with the previous config, disposing its removed loggers anyway");
+
+		for (LoggerClient removedClient : removedClients) {
+			removedClient.dispose();
+		}
+	}
+
+	/**
+	 * @param removed Receives the clients of the previous config that are not in use anymore.
+	 * @return The routing table of the previous config.
+	 */
+	private synchronized RoutingTable swapConfig(BeConfig _config, List<LoggerClient> removed) {
 		if (_config.rules == null)
 			throw new BadImplementationException("what is the point in having no rules??");
 
+		for (Rule rule : _config.rules) {
+			if (rule.maxPerSecond < 0 || rule.sampleRate < 0)
+				throw new BadImplementationException("Rule limits MUST NOT be negative, found maxPerSecond: " + rule.maxPerSecond + ", sampleRate: " + rule.sampleRate);
+		}
+
 		for (LoggerConfig config : _config.configs) {
 			if (config.key == null)
 				throw new BadImplementationException("logger MUST have a key!!");
 
+			if (config.async && config.asyncQueueSize <= 0)
+				throw new BadImplementationException("Async queue size MUST be positive, found " + config.asyncQueueSize + " for logger: " + config.key);
+
 			for (LoggerConfig otherConfig : _config.configs) {
 				if (otherConfig == config)
 					continue;
@@ -188,48 +393,83 @@ public final class BeLogged {
 		/*
 			if a log config already in use in the runtime belogged instance, there is no point in disposing and re-initializing it
 		 */
-		ArrayList<LoggerConfig> configsToAdd = new ArrayList<>(Arrays.asList(_config.configs));
-		Map<String, LoggerClient> logClients = this.logClients;
-		for (String s : logClients.keySet()) {
-			LoggerClient loggerClient = logClients.get(s);
-			if (loggerClient == null)
-				continue;
+		RoutingTable previous = this.routingTable;
+		HashMap<String, LoggerClient> removedClients = new HashMap<>(previous.getClients());
+		HashMap<String, LoggerClient> clients = new HashMap<>();
+		HashMap<LoggerClient, LoggerConfig> reusedClients = new HashMap<>();
+		ArrayList<LoggerClient> createdClients = new ArrayList<>();
+		ArrayList<String> _defaultLoggers = new ArrayList<>();
 
-			int configIndex = configsToAdd.indexOf(loggerClient.config);
-			if (configIndex > -1) {
-				loggerClient.config = configsToAdd.get(configIndex);
-				configsToAdd.remove(configIndex);
-				continue;
+		RoutingTable routingTable;
+		try {
+			for (LoggerConfig config : _config.configs) {
+				LoggerClient loggerClient = takeReusableClient(removedClients, config);
+				if (loggerClient != null)
+					reusedClients.put(loggerClient, config);
+				else
+					createdClients.add(loggerClient = createLoggerFromConfig(config));
+
+				clients.put(config.key, loggerClient);
+				if (config.isDefault)
+					_defaultLoggers.add(config.key);
 			}
 
-			loggerClient = logClients.remove(s);
-			loggerClient.dispose();
+			routingTable = new RoutingTable(_config.rules, ArrayTools.asArray(_defaultLoggers, String.class), clients, metrics);
+		} catch (RuntimeException e) {
+			// nothing was applied, the current config remains in effect
+			for (LoggerClient createdClient : createdClients) {
+				createdClient.dispose();
+			}
+			throw e;
 		}
 
-		ArrayList<String> _defaultLoggers = new ArrayList<>();
-		for (LoggerConfig config : configsToAdd) {
-			LoggerClient loggerClient = createLoggerFromConfig(config);
-			this.logClients.put(config.key, loggerClient);
+		for (Map.Entry<LoggerClient, LoggerConfig> entry : reusedClients.entrySet()) {
+			entry.getKey().updateConfig(entry.getValue());
+		}
 
-			if (config.isDefault)
-				_defaultLoggers.add(config.key);
+		// collapsed repeats and suppressed entries are reported to the clients they were routed to
+		flushRepeats(0);
+		flushSuppressed(true);
+		this.routingTable = routingTable;
+		updateTagContexts();
+
+		if (routingTable.hasLimits() && suppressedFlush == null)
+			suppressedFlush = getFlusher().scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					flushSuppressed(false);
+				}
+			}, SuppressedFlushInterval, SuppressedFlushInterval, TimeUnit.MILLISECONDS);
+
+		// a reused client may have changed its key
+		for (String loggerKey : previous.getClients().keySet()) {
+			if (!clients.containsKey(loggerKey))
+				MetricsRegistry.unregister(MetricsType_LoggerClient, loggerKey);
 		}
 
-		String[] defaultLoggers = ArrayTools.asArray(_defaultLoggers, String.class);
-		for (Rule rule : _config.rules) {
-			if (rule.thread != null)
-				rule._thread = Pattern.compile(rule.thread, Pattern.CASE_INSENSITIVE);
+		for (Map.Entry<String, LoggerClient> entry : clients.entrySet()) {
+			MetricsRegistry.register(MetricsType_LoggerClient, entry.getKey(), entry.getValue().getMetrics());
+		}
 
-			if (rule.tag != null)
-				rule._tag = Pattern.compile(rule.tag, Pattern.CASE_INSENSITIVE);
+		removed.addAll(removedClients.values());
+		return previous;
+	}
+
+	private static LoggerClient takeReusableClient(Map<String, LoggerClient> clients, LoggerConfig config) {
+		for (Iterator<LoggerClient> iterator = clients.values().iterator(); iterator.hasNext(); ) {
+			LoggerClient client = iterator.next();
+			if (!config.equals(client.config))
+				continue;
 
-			if (rule.loggerKeys != null && rule.loggerKeys.length > 0)
+			// configs do not necessarily compare these
+			if (config.async != client.config.async || config.asyncQueueSize != client.config.asyncQueueSize)
 				continue;
 
-			rule.loggerKeys = defaultLoggers;
+			iterator.remove();
+			return client;
 		}
 
-		this.rules = _config.rules;
+		return null;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -243,44 +483,181 @@ public final class BeLogged {
 		LoggerClient<Config> logger = ReflectiveTools.newInstance(validator.loggerType);
 		logger.setConfig(config);
 		logger.init();
-		return logger;
+		if (!config.async || logger.isAsynchronous())
+			return logger;
+
+		LoggerClient<Config> asyncLogger = new AsyncLoggerClient<>(logger);
+		asyncLogger.init();
+		return asyncLogger;
 	}
 
 	final void log(final LogLevel level, final String tag, final String message, final Object[] params, final Throwable t) {
-		if (!(level.ordinal() >= minLogLevel.ordinal() && level.ordinal() <= maxLogLevel.ordinal()))
+		log(level, tag, message, params, null, t);
+	}
+
+	final void log(final LogLevel level, final String tag, final String message, final Object[] params, final LogFields fields, final Throwable t) {
+		if (!(level.ordinal() >= minLogLevel.ordinal() && level.ordinal() <= maxLogLevel.ordinal())) {
+			metrics.filtered.increment();
 			return;
+		}
+
+		RepeatedEntry repeated = null;
+		long repeatWindow = this.repeatWindow;
+		// an entry with no message is told apart only by its throwable, it is never a repeat
+		if (repeatWindow > 0 && message != null) {
+			repeated = getTagContext(tag).collapse(level, message, System.currentTimeMillis(), repeatWindow);
+			if (repeated == RepeatedEntry.Repeat) {
+				metrics.collapsed.increment();
+				return;
+			}
+		}
 
+		RoutingTable routingTable = enterRoutingTable();
+		try {
+			if (repeated != null)
+				dispatch(routingTable, repeated.level, tag, getRepeatSummary(repeated), null, null, null);
+
+			dispatch(routingTable, level, tag, message, params, fields, t);
+		} finally {
+			routingTable.exit();
+		}
+	}
+
+	private RoutingTable enterRoutingTable() {
+		while (true) {
+			RoutingTable routingTable = this.routingTable;
+			routingTable.enter();
+			// checked again once entered, so a config change either waits for this thread or this thread uses the new table
+			if (routingTable == this.routingTable)
+				return routingTable;
+
+			routingTable.exit();
+		}
+	}
+
+	private void dispatch(RoutingTable routingTable, LogLevel level, String tag, String message, Object[] params, LogFields fields, Throwable t) {
 		Thread thread = Thread.currentThread();
-		String formattedMessage = params == null || params.length == 0 ? message : null;
+		Route route = routingTable.getRoute(level, tag, thread.getName());
+		if (route.clients.length == 0) {
+			metrics.filtered.increment();
+			return;
+		}
 
-		HashSet<String> used = syncLoggerSet.get();
-		for (Rule rule : rules) {
-			if (!(level.ordinal() >= rule.minLevel.ordinal() && level.ordinal() <= rule.maxLevel.ordinal()))
-				continue;
+		if (route.limiters != null) {
+			dispatchLimited(route, level, thread, tag, message, params, fields, t);
+			return;
+		}
 
-			if (rule._thread != null && !rule._thread.matcher(thread.getName()).matches())
-				continue;
+		metrics.routed.increment();
+		deliver(route.clients, System.currentTimeMillis(), level, thread, tag, message, params, fields, t);
+	}
 
-			if (rule._tag != null && !rule._tag.matcher(tag).matches())
+	/**
+	 * The limits are checked before the entry is formatted, so a suppressed entry costs no more than a token bucket check.
+	 */
+	private void dispatchLimited(Route route, LogLevel level, Thread thread, String tag, String message, Object[] params, LogFields fields, Throwable t) {
+		long timestamp = 0;
+		for (int i = 0; i < route.groups.length; i++) {
+			RuleLimiter limiter = route.limiters[i];
+			if (limiter != null && !limiter.tryAcquire()) {
+				metrics.suppressed.increment();
 				continue;
+			}
 
-			if (formattedMessage == null && message != null)
-				formattedMessage = String.format(message, params);
+			if (timestamp == 0) {
+				timestamp = System.currentTimeMillis();
+				// formatted once for all the groups
+				if (fields == null && deferredFormatting && message != null && params != null && params.length > 0)
+					params = snapshotParams(params);
+				else if (params != null && params.length > 0 && message != null) {
+					message = String.format(message, params);
+					params = null;
+				}
+			}
 
-			long timestamp = System.currentTimeMillis();
-			for (String loggerKey : rule.loggerKeys) {
-				if (used.contains(loggerKey))
-					continue;
+			String summary = limiter == null ? null : limiter.takeSummary();
+			if (summary != null)
+				deliver(route.groups[i], timestamp, LogLevel.Warning, thread, tag, summary, null, null, null);
 
-				LoggerClient client = logClients.get(loggerKey);
-				if (client == null)
-					continue;
+			deliver(route.groups[i], timestamp, level, thread, tag, message, params, fields, t);
+		}
 
-				client._log(timestamp, level, thread, tag, formattedMessage, t);
-				used.add(loggerKey);
+		if (timestamp != 0)
+			metrics.routed.increment();
+	}
+
+	private void deliver(LoggerClient[] clients, long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, LogFields fields, Throwable t) {
+		if (fields == null && deferredFormatting && message != null && params != null && params.length > 0) {
+			Object[] snapshot = snapshotParams(params);
+			for (LoggerClient client : clients) {
+				client._log(timestamp, level, thread, tag, message, snapshot, t);
 			}
+			return;
+		}
+
+		String formattedMessage = params == null || params.length == 0 || message == null ? message : String.format(message, params);
+		if (fields != null) {
+			for (LoggerClient client : clients) {
+				client._log(timestamp, level, thread, tag, formattedMessage, fields, t);
+			}
+			return;
+		}
+
+		for (LoggerClient client : clients) {
+			client._log(timestamp, level, thread, tag, formattedMessage, t);
+		}
+	}
+
+	static Object[] snapshotParams(Object[] params) {
+		Object[] snapshot = params;
+		for (int i = 0; i < params.length; i++) {
+			Object param = params[i];
+			if (param == null || isImmutable(param))
+				continue;
+
+			if (snapshot == params)
+				snapshot = params.clone();
+
+			snapshot[i] = snapshotParam(param);
 		}
-		used.clear();
+		return snapshot;
+	}
+
+	/**
+	 * Mutable values a format conversion other than %s applies to are copied with their type, so %d, %f and %t still accept them.
+	 */
+	private static Object snapshotParam(Object param) {
+		if (param instanceof AtomicInteger)
+			return ((AtomicInteger) param).get();
+
+		if (param instanceof AtomicLong)
+			return ((AtomicLong) param).get();
+
+		if (param instanceof Date)
+			return ((Date) param).clone();
+
+		if (param instanceof Calendar)
+			return ((Calendar) param).clone();
+
+		return String.valueOf(param);
+	}
+
+	private static boolean isImmutable(Object param) {
+		return param instanceof String ||
+			param instanceof Integer ||
+			param instanceof Long ||
+			param instanceof Double ||
+			param instanceof Float ||
+			param instanceof Boolean ||
+			param instanceof Character ||
+			param instanceof Short ||
+			param instanceof Byte ||
+			param instanceof BigInteger ||
+			param instanceof BigDecimal ||
+			param instanceof Enum ||
+			param instanceof Throwable ||
+			// the java.time types are all immutable, matched by name as the package is missing on older platforms
+			param.getClass().getName().startsWith("java.time.");
 	}
 
 	public final Logger getLogger(Object objectForTag) {
@@ -294,11 +671,23 @@ public final class BeLogged {
 		return new Logger().setTag(tag);
 	}
 
+	public BeLoggedMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return The client configured with the given key, never the async queue it may be decorated with.
+	 */
 	public LoggerClient getClient(String loggerKey) {
-		return logClients.get(loggerKey);
+		LoggerClient client = routingTable.getClient(loggerKey);
+		return client == null ? null : client.getUndecorated();
 	}
 
 	public LoggerClient[] getClients() {
-		return ArrayTools.asArray(logClients.values(), LoggerClient.class);
+		LoggerClient[] clients = ArrayTools.asArray(routingTable.getClients().values(), LoggerClient.class);
+		for (int i = 0; i < clients.length; i++) {
+			clients[i] = clients[i].getUndecorated();
+		}
+		return clients;
 	}
 }
@@ -0,0 +1,75 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.interfaces.BeLoggedMetricsMXBean;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The runtime metrics of the routing in {@link BeLogged}.
+ */
+public final class BeLoggedMetrics
+	implements BeLoggedMetricsMXBean {
+
+	final StripedCounter routed = new StripedCounter();
+	final StripedCounter filtered = new StripedCounter();
+	final StripedCounter suppressed = new StripedCounter();
+	final StripedCounter collapsed = new StripedCounter();
+	final StripedCounter ruleEvaluations = new StripedCounter();
+	final StripedCounter ruleEvaluationTime = new StripedCounter();
+
+	BeLoggedMetrics() {}
+
+	final void recordRuleEvaluation(long durationNanos) {
+		ruleEvaluations.increment();
+		ruleEvaluationTime.add(durationNanos);
+	}
+
+	@Override
+	public long getRoutedCount() {
+		return routed.sum();
+	}
+
+	@Override
+	public long getFilteredCount() {
+		return filtered.sum();
+	}
+
+	@Override
+	public long getSuppressedCount() {
+		return suppressed.sum();
+	}
+
+	@Override
+	public long getCollapsedCount() {
+		return collapsed.sum();
+	}
+
+	@Override
+	public long getRuleEvaluationCount() {
+		return ruleEvaluations.sum();
+	}
+
+	@Override
+	public long getRuleEvaluationTimeMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(ruleEvaluationTime.sum());
+	}
+}
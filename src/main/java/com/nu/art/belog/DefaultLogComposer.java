@@ -20,49 +20,92 @@
 package com.nu.art.belog;
 
 import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.belog.interfaces.LogBufferComposer;
+import com.nu.art.belog.interfaces.LogComposer;
+import com.nu.art.belog.interfaces.StructuredLogComposer;
 import com.nu.art.core.interfaces.Getter;
-import com.nu.art.core.tools.ExceptionTools;
 import com.nu.art.core.utils.SynchronizedObject;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-
 /**
  * Created by TacB0sS on 27-Feb 2017.
  */
 public class DefaultLogComposer
-	implements com.nu.art.belog.interfaces.LogComposer {
+	implements LogComposer, LogBufferComposer, StructuredLogComposer {
+
+	private final static TimestampRenderer DefaultTimestampRenderer = new TimestampRenderer();
+
+	private final TimestampRenderer timestampRenderer;
 
-	private final static SimpleDateFormat DefaultTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSSZ");
-	private SynchronizedObject<StringBuilder> buffers = new SynchronizedObject<>(new Getter<StringBuilder>() {
+	private final StackTraceRenderer stackTraceRenderer;
+
+	private SynchronizedObject<LogBuffer> buffers = new SynchronizedObject<>(new Getter<LogBuffer>() {
 		@Override
-		public StringBuilder get() {
-			return new StringBuilder();
+		public LogBuffer get() {
+			return new LogBuffer();
 		}
 	});
 
-	private final Date date = new Date();
+	public DefaultLogComposer() {
+		this(DefaultTimestampRenderer);
+	}
+
+	public DefaultLogComposer(TimestampRenderer timestampRenderer) {
+		this(timestampRenderer, StackTraceRenderer.Default);
+	}
+
+	public DefaultLogComposer(TimestampRenderer timestampRenderer, StackTraceRenderer stackTraceRenderer) {
+		this.timestampRenderer = timestampRenderer;
+		this.stackTraceRenderer = stackTraceRenderer;
+	}
+
+	@Override
+	public String composeEntry(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+		LogBuffer buffer = buffers.get();
+		buffer.reset();
+		composeEntry(buffer, timestamp, level, thread, tag, message, t);
+		return buffer.toString();
+	}
+
+	@Override
+	public void composeEntry(LogBuffer buffer, long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+		composeEntry(buffer, timestamp, level, thread, tag, message, null, t);
+	}
 
+	/**
+	 * The fields follow the message on the same line, as key=value pairs.
+	 */
 	@Override
-	public synchronized String composeEntry(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
-		date.setTime(timestamp);
-
-		StringBuilder buffer = buffers.get();
-		buffer.setLength(0);
-		buffer.append(DefaultTimeFormat.format(date)).append(" ");
-		buffer.append(level).append("/");
-		buffer.append(thread.getName()).append("/");
+	public void composeEntry(LogBuffer buffer, long timestamp, LogLevel level, Thread thread, String tag, String message, LogFields fields, Throwable t) {
+		composeEntry(buffer, timestamp, level, thread.getName(), tag, message, fields, t == null ? null : stackTraceRenderer.render(t));
+	}
+
+	/**
+	 * Composes an entry whose thread and throwable were already reduced to text, e.g. when it is decoded from a binary log.
+	 */
+	public void composeEntry(LogBuffer buffer, long timestamp, LogLevel level, String threadName, String tag, String message, String stackTrace) {
+		composeEntry(buffer, timestamp, level, threadName, tag, message, null, stackTrace);
+	}
+
+	private void composeEntry(LogBuffer buffer, long timestamp, LogLevel level, String threadName, String tag, String message, LogFields fields, String stackTrace) {
+		timestampRenderer.render(buffer, timestamp);
+		buffer.append(' ');
+		buffer.append(level.name()).append('/');
+		buffer.append(threadName).append('/');
 		buffer.append(tag).append(": ");
 
+		boolean hasFields = fields != null && fields.size() > 0;
 		if (message != null) {
 			buffer.append(message);
 			if (!message.endsWith("\n"))
-				buffer.append("\n");
+				buffer.append(hasFields ? ' ' : '\n');
 		}
 
-		if (t != null)
-			buffer.append(ExceptionTools.getStackTrace(t)).append("\n");
+		if (hasFields) {
+			fields.appendTo(buffer);
+			buffer.append('\n');
+		}
 
-		return buffer.toString();
+		if (stackTrace != null)
+			buffer.append(stackTrace).append('\n');
 	}
 }
@@ -0,0 +1,151 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.google.gson.stream.JsonWriter;
+import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.belog.interfaces.LogComposer;
+import com.nu.art.belog.interfaces.StructuredLogComposer;
+import com.nu.art.core.interfaces.Getter;
+import com.nu.art.core.utils.SynchronizedObject;
+
+import java.io.IOException;
+
+/**
+ * Composes every entry as a single line JSON object, e.g.:
+ * <pre>
+ * {"timestamp":1524470400123,"level":"Info","thread":"main","tag":"Payments","message":"charged","fields":{"amount":12.5,"retry":false}}
+ * </pre>
+ * The entry is streamed with a {@link JsonWriter} straight into the target buffer, and field values are written with their JSON type.
+ */
+public class JsonLogComposer
+	implements LogComposer, StructuredLogComposer {
+
+	private static final class JsonTarget {
+
+		final LogBufferWriter writer = new LogBufferWriter();
+		JsonWriter json = createJsonWriter(writer);
+
+		// setStrictness replaces it only as of Gson 2.11, the Gson version is up to the application
+		@SuppressWarnings("deprecation")
+		private static JsonWriter createJsonWriter(LogBufferWriter writer) {
+			JsonWriter json = new JsonWriter(writer);
+			// one top level object per line, and NaN or infinite doubles are written rather than rejected
+			json.setLenient(true);
+			return json;
+		}
+	}
+
+	private final StackTraceRenderer stackTraceRenderer;
+
+	private final SynchronizedObject<JsonTarget> targets = new SynchronizedObject<>(new Getter<JsonTarget>() {
+		@Override
+		public JsonTarget get() {
+			return new JsonTarget();
+		}
+	});
+
+	private final SynchronizedObject<LogBuffer> buffers = new SynchronizedObject<>(new Getter<LogBuffer>() {
+		@Override
+		public LogBuffer get() {
+			return new LogBuffer();
+		}
+	});
+
+	public JsonLogComposer() {
+		this(StackTraceRenderer.Default);
+	}
+
+	public JsonLogComposer(StackTraceRenderer stackTraceRenderer) {
+		this.stackTraceRenderer = stackTraceRenderer;
+	}
+
+	@Override
+	public String composeEntry(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+		LogBuffer buffer = buffers.get();
+		buffer.reset();
+		composeEntry(buffer, timestamp, level, thread, tag, message, null, t);
+		return buffer.toString();
+	}
+
+	@Override
+	public void composeEntry(LogBuffer buffer, long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+		composeEntry(buffer, timestamp, level, thread, tag, message, null, t);
+	}
+
+	@Override
+	public void composeEntry(LogBuffer buffer, long timestamp, LogLevel level, Thread thread, String tag, String message, LogFields fields, Throwable t) {
+		JsonTarget target = targets.get();
+		target.writer.buffer = buffer;
+		int start = buffer.size();
+		try {
+			JsonWriter json = target.json;
+			json.beginObject();
+			json.name("timestamp").value(timestamp);
+			json.name("level").value(level.name());
+			json.name("thread").value(thread.getName());
+			json.name("tag").value(tag);
+			if (message != null)
+				json.name("message").value(message);
+
+			if (fields != null && fields.size() > 0)
+				writeFields(json, fields);
+
+			if (t != null)
+				json.name("stackTrace").value(stackTraceRenderer.render(t));
+
+			json.endObject();
+		} catch (IOException | RuntimeException e) {
+			// the writer never throws, but a half written entry leaves the JsonWriter in a state it cannot recover from
+			target.json = JsonTarget.createJsonWriter(target.writer);
+			buffer.truncate(start);
+			buffer.append("{\"timestamp\":").append(timestamp).append(",\"error\":\"Error composing entry: ").append(e.getClass().getSimpleName()).append("\"}");
+		} finally {
+			target.writer.buffer = null;
+		}
+
+		buffer.append('\n');
+	}
+
+	private static void writeFields(JsonWriter json, LogFields fields)
+		throws IOException {
+		json.name("fields").beginObject();
+		for (int i = 0; i < fields.size(); i++) {
+			json.name(fields.getKey(i));
+			switch (fields.getType(i)) {
+				case Long:
+					json.value(fields.getLong(i));
+					break;
+
+				case Double:
+					json.value(fields.getDouble(i));
+					break;
+
+				case Boolean:
+					json.value(fields.getBoolean(i));
+					break;
+
+				default:
+					json.value(fields.getString(i));
+			}
+		}
+		json.endObject();
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A reusable, growable byte sink that encodes appended text straight to UTF-8.
+ * <p>
+ * Not thread safe, every composing thread is expected to own its buffer.
+ */
+public final class LogBuffer {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private byte[] bytes;
+	private int size;
+
+	public LogBuffer() {
+		this(1024);
+	}
+
+	public LogBuffer(int initialCapacity) {
+		bytes = new byte[Math.max(16, initialCapacity)];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void reset() {
+		size = 0;
+	}
+
+	/**
+	 * Drops everything appended after the first {@code size} bytes.
+	 */
+	public void truncate(int size) {
+		if (size < 0 || size > this.size)
+			throw new IndexOutOfBoundsException("Cannot truncate " + this.size + " bytes to " + size);
+
+		this.size = size;
+	}
+
+	/**
+	 * @return The backing array, valid up to {@link #size()}, and only until the next append.
+	 */
+	public byte[] array() {
+		return bytes;
+	}
+
+	public LogBuffer append(String value) {
+		if (value == null)
+			value = "null";
+
+		return append(value, 0, value.length());
+	}
+
+	/**
+	 * Appends {@code length} chars of the value, starting at {@code offset}.
+	 */
+	public LogBuffer append(String value, int offset, int length) {
+		int end = offset + length;
+		ensureCapacity(size + length);
+		for (int i = offset; i < end; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				// the common case, keep it tight
+				if (size == bytes.length)
+					ensureCapacity(size + end - i);
+
+				bytes[size++] = (byte) c;
+				continue;
+			}
+
+			if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(value.charAt(i + 1))) {
+				appendCodePoint(Character.toCodePoint(c, value.charAt(++i)));
+				continue;
+			}
+
+			appendCodePoint(Character.isSurrogate(c) ? '?' : c);
+		}
+		return this;
+	}
+
+	/**
+	 * Appends the decimal digits of the value, without going through a String.
+	 */
+	public LogBuffer append(long value) {
+		if (value == Long.MIN_VALUE)
+			return append("-9223372036854775808");
+
+		if (value < 0) {
+			appendByte('-');
+			value = -value;
+		}
+
+		int digits = 1;
+		for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+			digits++;
+		}
+
+		ensureCapacity(size + digits);
+		for (int i = size + digits - 1; i >= size; i--) {
+			bytes[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		size += digits;
+		return this;
+	}
+
+	public LogBuffer append(char c) {
+		if (c < 0x80)
+			return appendByte(c);
+
+		appendCodePoint(Character.isSurrogate(c) ? '?' : c);
+		return this;
+	}
+
+	public LogBuffer appendByte(int b) {
+		ensureCapacity(size + 1);
+		bytes[size++] = (byte) b;
+		return this;
+	}
+
+	public LogBuffer append(byte[] source, int offset, int length) {
+		ensureCapacity(size + length);
+		System.arraycopy(source, offset, bytes, size, length);
+		size += length;
+		return this;
+	}
+
+	public LogBuffer append(LogBuffer other) {
+		return append(other.bytes, 0, other.size);
+	}
+
+	private void appendCodePoint(int codePoint) {
+		ensureCapacity(size + 4);
+		if (codePoint < 0x800) {
+			bytes[size++] = (byte) (0xC0 | (codePoint >> 6));
+			bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+		} else if (codePoint < 0x10000) {
+			bytes[size++] = (byte) (0xE0 | (codePoint >> 12));
+			bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+			bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+		} else {
+			bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+			bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+			bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+			bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= bytes.length)
+			return;
+
+		bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length << 1));
+	}
+
+	public void writeTo(OutputStream outputStream)
+		throws IOException {
+		outputStream.write(bytes, 0, size);
+	}
+
+	/**
+	 * Copies as much of the content as fits, starting at {@code offset}, into the given buffer.
+	 *
+	 * @return The number of bytes copied.
+	 */
+	public int writeTo(ByteBuffer buffer, int offset) {
+		int length = Math.min(buffer.remaining(), size - offset);
+		buffer.put(bytes, offset, length);
+		return length;
+	}
+
+	@Override
+	public String toString() {
+		return new String(bytes, 0, size, UTF_8);
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import java.io.Writer;
+
+/**
+ * A {@link Writer} over whichever {@link LogBuffer} it currently targets, so writer based APIs can compose straight into a log buffer.
+ */
+final class LogBufferWriter
+	extends Writer {
+
+	LogBuffer buffer;
+
+	@Override
+	public void write(int c) {
+		buffer.append((char) c);
+	}
+
+	@Override
+	public void write(String value) {
+		buffer.append(value);
+	}
+
+	@Override
+	public void write(String value, int offset, int length) {
+		buffer.append(value, offset, length);
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) {
+		buffer.append(new String(chars, offset, length));
+	}
+
+	@Override
+	public void flush() {}
+
+	@Override
+	public void close() {}
+}
@@ -0,0 +1,42 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.belog.interfaces.LogBufferComposer;
+import com.nu.art.belog.interfaces.LogComposer;
+
+/**
+ * Lets a String based {@link LogComposer} serve where a {@link LogBufferComposer} is expected.
+ */
+final class LogComposerAdapter
+	implements LogBufferComposer {
+
+	private final LogComposer composer;
+
+	LogComposerAdapter(LogComposer composer) {
+		this.composer = composer;
+	}
+
+	@Override
+	public void composeEntry(LogBuffer buffer, long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+		buffer.append(composer.composeEntry(timestamp, level, thread, tag, message, t));
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import java.util.Arrays;
+
+/**
+ * Typed key/value pairs that travel with a log entry next to its message, so they never have to be parsed back out of a formatted
+ * string.
+ * <p>
+ * Primitive values are kept in a primitive array, nothing is boxed. A LogFields instance must not be changed once it was logged, since
+ * clients may compose the entry on their own thread.
+ */
+public final class LogFields {
+
+	public enum FieldType {
+		Long,
+		Double,
+		Boolean,
+		String,
+	}
+
+	private static final FieldType[] Types = FieldType.values();
+
+	private String[] keys;
+	private byte[] types;
+
+	// longs, booleans as 0/1 and doubles as their raw bits
+	private long[] primitives;
+	private String[] strings;
+
+	private int size;
+
+	public LogFields() {
+		this(4);
+	}
+
+	public LogFields(int initialCapacity) {
+		initialCapacity = Math.max(1, initialCapacity);
+		keys = new String[initialCapacity];
+		types = new byte[initialCapacity];
+		primitives = new long[initialCapacity];
+		strings = new String[initialCapacity];
+	}
+
+	public LogFields add(String key, long value) {
+		int index = append(key, FieldType.Long);
+		primitives[index] = value;
+		return this;
+	}
+
+	public LogFields add(String key, int value) {
+		return add(key, (long) value);
+	}
+
+	public LogFields add(String key, double value) {
+		int index = append(key, FieldType.Double);
+		primitives[index] = Double.doubleToRawLongBits(value);
+		return this;
+	}
+
+	public LogFields add(String key, boolean value) {
+		int index = append(key, FieldType.Boolean);
+		primitives[index] = value ? 1 : 0;
+		return this;
+	}
+
+	public LogFields add(String key, String value) {
+		int index = append(key, FieldType.String);
+		strings[index] = value;
+		return this;
+	}
+
+	/**
+	 * Boxed numbers and booleans keep their type, any other value is captured right away with {@link String#valueOf(Object)}.
+	 */
+	public LogFields add(String key, Object value) {
+		if (value instanceof Double || value instanceof Float)
+			return add(key, ((Number) value).doubleValue());
+
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+			return add(key, ((Number) value).longValue());
+
+		if (value instanceof Boolean)
+			return add(key, ((Boolean) value).booleanValue());
+
+		return add(key, value == null ? null : String.valueOf(value));
+	}
+
+	/**
+	 * @return The index of the new field, only valid against the arrays as they are after the call.
+	 */
+	private int append(String key, FieldType type) {
+		if (size == keys.length) {
+			int capacity = size * 2;
+			keys = Arrays.copyOf(keys, capacity);
+			types = Arrays.copyOf(types, capacity);
+			primitives = Arrays.copyOf(primitives, capacity);
+			strings = Arrays.copyOf(strings, capacity);
+		}
+
+		keys[size] = key;
+		types[size] = (byte) type.ordinal();
+		return size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public String getKey(int index) {
+		return keys[index];
+	}
+
+	public FieldType getType(int index) {
+		return Types[types[index]];
+	}
+
+	public long getLong(int index) {
+		return primitives[index];
+	}
+
+	public double getDouble(int index) {
+		return Double.longBitsToDouble(primitives[index]);
+	}
+
+	public boolean getBoolean(int index) {
+		return primitives[index] != 0;
+	}
+
+	public String getString(int index) {
+		return strings[index];
+	}
+
+	/**
+	 * Appends the fields as space separated key=value pairs, string values are quoted when needed.
+	 */
+	public void appendTo(LogBuffer buffer) {
+		for (int i = 0; i < size; i++) {
+			if (i > 0)
+				buffer.append(' ');
+
+			buffer.append(keys[i]).append('=');
+			switch (getType(i)) {
+				case Long:
+					buffer.append(primitives[i]);
+					break;
+
+				case Double:
+					buffer.append(Double.toString(getDouble(i)));
+					break;
+
+				case Boolean:
+					buffer.append(getBoolean(i) ? "true" : "false");
+					break;
+
+				default:
+					appendString(buffer, strings[i]);
+			}
+		}
+	}
+
+	private static void appendString(LogBuffer buffer, String value) {
+		if (value == null) {
+			buffer.append("null");
+			return;
+		}
+
+		if (!needsQuotes(value)) {
+			buffer.append(value);
+			return;
+		}
+
+		buffer.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+				case '\\':
+					buffer.append('\\').append(c);
+					break;
+
+				case '\n':
+					buffer.append("\\n");
+					break;
+
+				case '\r':
+					buffer.append("\\r");
+					break;
+
+				case '\t':
+					buffer.append("\\t");
+					break;
+
+				default:
+					if (Character.isHighSurrogate(c) && i + 1 < value.length()) {
+						buffer.append(value, i, 2);
+						i++;
+						continue;
+					}
+
+					buffer.append(c);
+			}
+		}
+		buffer.append('"');
+	}
+
+	private static boolean needsQuotes(String value) {
+		if (value.isEmpty())
+			return true;
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c <= ' ' || c == '"' || c == '=' || c == '\\')
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		LogBuffer buffer = new LogBuffer(size * 16);
+		appendTo(buffer);
+		return buffer.toString();
+	}
+}
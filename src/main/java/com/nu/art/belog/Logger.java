@@ -38,6 +38,8 @@ public class Logger
 
 	private transient BeLogged beLogged;
 
+	private transient TagContext tagContext;
+
 	private String tag = "NotSet";
 
 	private boolean enable = true;
@@ -51,10 +53,12 @@ public class Logger
 
 	protected Logger() {
 		beLogged = BeLogged.getInstance();
+		tagContext = beLogged.getTagContext(tag);
 	}
 
 	public Logger setTag(String tag) {
 		this.tag = tag;
+		this.tagContext = beLogged.getTagContext(tag);
 		return this;
 	}
 
@@ -66,8 +70,13 @@ public class Logger
 		this.minLogLevel = minLogLevel;
 	}
 
-	private boolean canLog(LogLevel logLevelToLog) {
-		return logLevelToLog.ordinal() >= minLogLevel.ordinal() && isLoggerEnabled();
+	/**
+	 * A cheap check callers can use to skip building expensive log arguments.
+	 *
+	 * @return false if an entry with the given level would be filtered out by this logger, the global levels or the configured rules.
+	 */
+	public boolean isLoggable(LogLevel logLevelToLog) {
+		return tagContext.isLoggable(logLevelToLog) && logLevelToLog.ordinal() >= minLogLevel.ordinal() && isLoggerEnabled();
 	}
 
 	public void setLoggerEnable(boolean enable) {
@@ -94,8 +103,23 @@ public class Logger
 		finalLog(level, message, params);
 	}
 
+	/**
+	 * Logs the message with typed key/value fields, which structured composers like the {@link JsonLogComposer} write as fields of their
+	 * own, and text composers append to the message as key=value pairs.
+	 */
+	public void log(LogLevel level, String message, LogFields fields) {
+		log(level, message, fields, null);
+	}
+
+	public void log(LogLevel level, String message, LogFields fields, Throwable e) {
+		if (!isLoggable(level))
+			return;
+
+		beLogged.log(level, tag, message, null, fields, e);
+	}
+
 	private void finalLog(LogLevel level, String message, Object... params) {
-		if (!canLog(level))
+		if (!isLoggable(level))
 			return;
 
 		Throwable t = null;
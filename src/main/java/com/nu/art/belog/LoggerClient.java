@@ -20,7 +20,10 @@ package com.nu.art.belog;
 
 import com.nu.art.belog.BeConfig.LoggerConfig;
 import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.belog.interfaces.LogBufferComposer;
 import com.nu.art.belog.interfaces.LogComposer;
+import com.nu.art.belog.interfaces.StructuredLogComposer;
+import com.nu.art.core.tools.ArrayTools;
 
 @SuppressWarnings( {
 	                   "unused",
@@ -28,8 +31,31 @@ import com.nu.art.belog.interfaces.LogComposer;
                    })
 public abstract class LoggerClient<Config extends LoggerConfig> {
 
-	protected LogComposer composer = new DefaultLogComposer();
+	protected LogComposer composer;
+	private LogBufferComposer bufferComposer;
+	private StructuredLogComposer structuredComposer;
 	protected Config config;
+	private LoggerMetrics metrics = new LoggerMetrics(this);
+
+	// the client this one decorates, if any
+	private final LoggerClient<Config> decorated;
+
+	{
+		setComposer(new DefaultLogComposer());
+	}
+
+	protected LoggerClient() {
+		decorated = null;
+	}
+
+	/**
+	 * For clients that decorate another client, e.g. hand its entries over to another thread.<br>
+	 * The decorated client reports to the metrics of its decorator, so the two are seen as a single client.
+	 */
+	protected LoggerClient(LoggerClient<Config> decorated) {
+		this.decorated = decorated;
+		shareMetrics(decorated);
+	}
 
 	public final void setConfig(Config config) {
 		this.config = config;
@@ -39,21 +65,164 @@ public abstract class LoggerClient<Config extends LoggerConfig> {
 		return config;
 	}
 
+	final void updateConfig(Config config) {
+		this.config = config;
+		if (decorated != null)
+			decorated.updateConfig(config);
+
+		onConfigUpdated();
+	}
+
+	/**
+	 * Called when a config equal to the current one replaced it on a reload, for clients made of other clients to pass it on.
+	 */
+	protected void onConfigUpdated() { }
+
+	public final LoggerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Makes the given client report to the metrics of this one, for clients that are made of other clients.
+	 */
+	protected final void shareMetrics(LoggerClient<?> client) {
+		client.metrics = metrics;
+	}
+
+	/**
+	 * @return The number of entries waiting to be written, clients that write on the calling thread have none.
+	 */
+	protected int getQueueDepth() {
+		return 0;
+	}
+
+	/**
+	 * @return true if the client writes its entries on a thread of its own, such clients are never decorated with an async queue.
+	 */
+	protected boolean isAsynchronous() {
+		return false;
+	}
+
 	public final void setComposer(LogComposer composer) {
 		this.composer = composer;
+		this.bufferComposer = composer instanceof LogBufferComposer ? (LogBufferComposer) composer : new LogComposerAdapter(composer);
+		this.structuredComposer = composer instanceof StructuredLogComposer ? (StructuredLogComposer) composer : null;
+		// the decorated client is the one composing the entries
+		if (decorated != null)
+			decorated.setComposer(composer);
 	}
 
 	protected void init() { }
 
 	final void _log(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+		metrics.recordAccepted();
 		log(timestamp, level, thread, tag, message, t);
 	}
 
+	final void _log(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, Throwable t) {
+		metrics.recordAccepted();
+		log(timestamp, level, thread, tag, message, params, t);
+	}
+
+	final void _log(long timestamp, LogLevel level, Thread thread, String tag, String message, LogFields fields, Throwable t) {
+		metrics.recordAccepted();
+		log(timestamp, level, thread, tag, message, fields, t);
+	}
+
 	protected abstract void log(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t);
 
+	/**
+	 * Receives entries whose message was not formatted yet, when {@link BeLogged#setDeferredFormatting(boolean)} is enabled.<br>
+	 * By default the message is formatted right away on the calling thread, clients that hand entries over to their own thread should
+	 * override this and call {@link #formatMessage(String, Object[])} over there.
+	 */
+	protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, Throwable t) {
+		log(timestamp, level, thread, tag, formatMessage(message, params), t);
+	}
+
+	/**
+	 * Receives entries logged with structured fields.<br>
+	 * By default the fields are appended to the message as key=value text, clients that compose entries into a buffer should override this
+	 * and hand the fields to {@link #composeEntry(LogBuffer, long, LogLevel, Thread, String, String, LogFields, Throwable)}.
+	 */
+	protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, LogFields fields, Throwable t) {
+		log(timestamp, level, thread, tag, formatMessage(message, fields), t);
+	}
+
+	/**
+	 * @return The message followed by the fields as key=value text.
+	 */
+	protected static String formatMessage(String message, LogFields fields) {
+		if (fields == null || fields.size() == 0)
+			return message;
+
+		return message == null ? fields.toString() : message + " " + fields;
+	}
+
+	/**
+	 * Formats the message, never throws, a message that cannot be formatted is replaced with a description of the failure.
+	 */
+	protected static String formatMessage(String message, Object[] params) {
+		if (message == null || params == null || params.length == 0)
+			return message;
+
+		try {
+			return String.format(message, params);
+		} catch (RuntimeException e) {
+			Object lastParam = params[params.length - 1];
+			if (lastParam instanceof Throwable)
+				try {
+					return String.format(message, ArrayTools.removeElement(params, lastParam));
+				} catch (RuntimeException ignore) {}
+
+			return "Error formatting string: " + message + ", with params: " + ArrayTools.printGenericArray("", -1, params) + " - " + e;
+		}
+	}
+
 	protected void dispose() {}
 
+	/**
+	 * Hands an entry over to the decorated client, using the log method that matches what the entry carries.
+	 */
+	protected final void logDecorated(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, LogFields fields, Throwable t) {
+		if (fields != null)
+			decorated.log(timestamp, level, thread, tag, message, fields, t);
+		else if (params != null)
+			decorated.log(timestamp, level, thread, tag, message, params, t);
+		else
+			decorated.log(timestamp, level, thread, tag, message, t);
+	}
+
+	protected final void disposeDecorated() {
+		decorated.dispose();
+	}
+
+	/**
+	 * @return The innermost client this one decorates, or this client if it decorates none.
+	 */
+	final LoggerClient<Config> getUndecorated() {
+		return decorated == null ? this : decorated.getUndecorated();
+	}
+
 	protected String composeEntry(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
 		return composer.composeEntry(timestamp, level, thread, tag, message, t);
 	}
+
+	/**
+	 * Appends the composed entry as UTF-8 to the given buffer, String based composers are adapted transparently.
+	 */
+	protected void composeEntry(LogBuffer buffer, long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+		bufferComposer.composeEntry(buffer, timestamp, level, thread, tag, message, t);
+	}
+
+	/**
+	 * Appends the composed entry with its fields to the given buffer, composers that do not render fields get them as key=value text
+	 * appended to the message.
+	 */
+	protected void composeEntry(LogBuffer buffer, long timestamp, LogLevel level, Thread thread, String tag, String message, LogFields fields, Throwable t) {
+		if (structuredComposer != null)
+			structuredComposer.composeEntry(buffer, timestamp, level, thread, tag, message, fields, t);
+		else
+			bufferComposer.composeEntry(buffer, timestamp, level, thread, tag, formatMessage(message, fields), t);
+	}
 }
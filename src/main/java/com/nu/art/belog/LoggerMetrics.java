@@ -0,0 +1,175 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.interfaces.LoggerMetricsMXBean;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The runtime metrics of a {@link LoggerClient}.
+ * <p>
+ * Accepted entries are counted by the infrastructure, everything else is reported by the client itself. Updates are lock free and
+ * striped across threads, cheap enough to always be on.
+ */
+public final class LoggerMetrics
+	implements LoggerMetricsMXBean {
+
+	private static final int LatencyBuckets = 32;
+
+	private final LoggerClient<?> client;
+
+	private final StripedCounter accepted = new StripedCounter();
+	private final StripedCounter dropped = new StripedCounter();
+	private final StripedCounter written = new StripedCounter();
+	private final StripedCounter bytesWritten = new StripedCounter();
+	private final StripedCounter errors = new StripedCounter();
+	private final StripedCounter rotations = new StripedCounter();
+	private final StripedCounter rotationTime = new StripedCounter();
+	private final AtomicLongArray latencies = new AtomicLongArray(LatencyBuckets);
+
+	LoggerMetrics(LoggerClient<?> client) {
+		this.client = client;
+	}
+
+	final void recordAccepted() {
+		accepted.increment();
+	}
+
+	public void recordDropped() {
+		dropped.increment();
+	}
+
+	public void recordWritten(int entries, long bytes) {
+		written.add(entries);
+		bytesWritten.add(bytes);
+	}
+
+	public void recordError() {
+		errors.increment();
+	}
+
+	/**
+	 * @param latencyNanos The time between an entry being handed to the client and it being written.
+	 */
+	public void recordLatency(long latencyNanos) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+		int bucket = Math.min(LatencyBuckets - 1, 64 - Long.numberOfLeadingZeros(micros));
+		latencies.getAndIncrement(bucket);
+	}
+
+	public void recordRotation(long durationNanos) {
+		rotations.increment();
+		rotationTime.add(durationNanos);
+	}
+
+	@Override
+	public String getKey() {
+		return client.config == null ? null : client.config.key;
+	}
+
+	@Override
+	public long getAcceptedCount() {
+		return accepted.sum();
+	}
+
+	@Override
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	@Override
+	public long getWrittenCount() {
+		return written.sum();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+
+	@Override
+	public long getErrorCount() {
+		return errors.sum();
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return client.getQueueDepth();
+	}
+
+	@Override
+	public long[] getLatencyHistogram() {
+		long[] histogram = new long[LatencyBuckets];
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] = latencies.get(i);
+		}
+		return histogram;
+	}
+
+	@Override
+	public long getLatencyP50Micros() {
+		return getLatencyPercentileMicros(0.5);
+	}
+
+	@Override
+	public long getLatencyP99Micros() {
+		return getLatencyPercentileMicros(0.99);
+	}
+
+	@Override
+	public long getLatencyMaxMicros() {
+		return getLatencyPercentileMicros(1);
+	}
+
+	/**
+	 * @return The upper bound of the bucket the percentile falls in, 0 if no latency was recorded.
+	 */
+	public long getLatencyPercentileMicros(double percentile) {
+		long[] histogram = getLatencyHistogram();
+		long total = 0;
+		for (long count : histogram) {
+			total += count;
+		}
+
+		if (total == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(total * percentile);
+		long seen = 0;
+		for (int bucket = 0; bucket < histogram.length; bucket++) {
+			seen += histogram[bucket];
+			if (seen >= Math.max(1, rank))
+				return 1L << bucket;
+		}
+		return 1L << (histogram.length - 1);
+	}
+
+	@Override
+	public long getRotationCount() {
+		return rotations.sum();
+	}
+
+	@Override
+	public long getRotationTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(rotationTime.sum());
+	}
+}
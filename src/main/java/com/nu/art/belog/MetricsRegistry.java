@@ -0,0 +1,99 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers metrics as MXBeans under the "com.nu.art.belog" domain, when the platform has JMX at all.
+ */
+final class MetricsRegistry {
+
+	private static final String Domain = "com.nu.art.belog";
+
+	private static final boolean Available = isAvailable();
+
+	private static boolean isAvailable() {
+		try {
+			Class.forName("java.lang.management.ManagementFactory");
+			return true;
+		} catch (Throwable e) {
+			// e.g. Android
+			return false;
+		}
+	}
+
+	private MetricsRegistry() {}
+
+	static void register(String type, String key, Object mxBean) {
+		if (!Available)
+			return;
+
+		try {
+			Jmx.register(type, key, mxBean);
+		} catch (Throwable e) {
+			System.err.println("BeLogged: could not register metrics of " + type + " '" + key + "': " + e);
+		}
+	}
+
+	static void unregister(String type, String key) {
+		if (!Available)
+			return;
+
+		try {
+			Jmx.unregister(type, key);
+		} catch (Throwable e) {
+			System.err.println("BeLogged: could not unregister metrics of " + type + " '" + key + "': " + e);
+		}
+	}
+
+	/**
+	 * Loaded only once JMX is known to be available.
+	 */
+	private static final class Jmx {
+
+		static void register(String type, String key, Object mxBean)
+			throws Exception {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = getName(type, key);
+			// a client re-created with the same key replaces the previous registration
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+
+			server.registerMBean(mxBean, objectName);
+		}
+
+		static void unregister(String type, String key)
+			throws Exception {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = getName(type, key);
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+		}
+
+		private static ObjectName getName(String type, String key)
+			throws Exception {
+			return new ObjectName(Domain + ":type=" + type + (key == null ? "" : ",key=" + ObjectName.quote(key)));
+		}
+	}
+}
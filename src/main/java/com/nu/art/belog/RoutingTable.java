@@ -0,0 +1,450 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.BeConfig.LimitScope;
+import com.nu.art.belog.BeConfig.Rule;
+import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.core.tools.ArrayTools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable snapshot of a config: the clients, and the rules compiled against them.
+ * <p>
+ * For a given tag, thread name and level the resolved clients never change, so they are resolved once and cached. A config change
+ * builds a new table and publishes it with a single write, threads that are still routing with the previous one are tracked, so its
+ * clients can be drained before they are disposed.
+ * <p>
+ * Every client gets a dense slot and every rule the slots of its clients, so resolving a route involves no logger key lookups, and a
+ * client already routed to is recognized by its bit.
+ * <p>
+ * A client is subject to the limits of the first rule that routes to it, the limiters are kept per rule for as long as the table is in
+ * use, regardless of the route cache.
+ */
+final class RoutingTable {
+
+	static final LoggerClient[] NoClients = {};
+
+	/**
+	 * The clients an entry with a given level, tag and thread name is routed to.
+	 */
+	static final class Route {
+
+		static final Route NoRoute = new Route(NoClients, null, null);
+
+		final LoggerClient[] clients;
+
+		/**
+		 * The clients grouped by the limiter they are subject to, a null limiter for the unlimited ones, both are null if no limit applies.
+		 */
+		final LoggerClient[][] groups;
+		final RuleLimiter[] limiters;
+
+		private Route(LoggerClient[] clients, LoggerClient[][] groups, RuleLimiter[] limiters) {
+			this.clients = clients;
+			this.groups = groups;
+			this.limiters = limiters;
+		}
+	}
+
+	/**
+	 * A summary of suppressed entries, with the clients of the rule that suppressed them.
+	 */
+	static final class SuppressedSummary {
+
+		final LoggerClient[] clients;
+		final String tag;
+		final String message;
+
+		private SuppressedSummary(LoggerClient[] clients, String tag, String message) {
+			this.clients = clients;
+			this.tag = tag;
+			this.message = message;
+		}
+	}
+
+	/**
+	 * The tag of the summaries of limiters kept per thread, which span many tags.
+	 */
+	private static final String SummaryTag = "BeLogged";
+
+	private static final String[] NoLoggerKeys = {};
+
+	/**
+	 * Thread pools with ever changing thread names must not grow the cache forever.
+	 */
+	private static final int MaxCachedRoutes = 4 * 1024;
+
+	private static final long MinQuiescencePark = TimeUnit.MICROSECONDS.toNanos(10);
+	private static final long MaxQuiescencePark = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private static final LogLevel[] Levels = LogLevel.values();
+
+	/**
+	 * A rule as it was when the config was applied, later changes to the {@link Rule} object have no effect.
+	 */
+	private static final class CompiledRule {
+
+		final Pattern tag;
+		final Pattern thread;
+		final int minLevel;
+		final int maxLevel;
+
+		final int maxPerSecond;
+		final int sampleRate;
+		final LimitScope limitPer;
+		private final ConcurrentHashMap<String, RuleLimiter> limiters;
+
+		// the slots of the clients the rule routes to
+		final int[] slots;
+
+		CompiledRule(Rule rule, String[] defaultLoggerKeys, Map<String, Integer> clientSlots) {
+			tag = rule.tag == null ? null : Pattern.compile(rule.tag, Pattern.CASE_INSENSITIVE);
+			thread = rule.thread == null ? null : Pattern.compile(rule.thread, Pattern.CASE_INSENSITIVE);
+			minLevel = rule.minLevel.ordinal();
+			maxLevel = rule.maxLevel.ordinal();
+			maxPerSecond = rule.maxPerSecond;
+			sampleRate = rule.sampleRate;
+			limitPer = rule.limitPer == null ? LimitScope.Tag : rule.limitPer;
+			limiters = maxPerSecond > 0 || sampleRate > 1 ? new ConcurrentHashMap<String, RuleLimiter>() : null;
+
+			String[] loggerKeys = rule.loggerKeys == null || rule.loggerKeys.length == 0 ? defaultLoggerKeys : rule.loggerKeys;
+			int[] slots = new int[loggerKeys.length];
+			int count = 0;
+			for (String loggerKey : loggerKeys) {
+				Integer slot = clientSlots.get(loggerKey);
+				if (slot != null)
+					slots[count++] = slot;
+			}
+			this.slots = count == slots.length ? slots : Arrays.copyOf(slots, count);
+		}
+
+		boolean matches(String tag, String threadName) {
+			return slots.length > 0 &&
+				(thread == null || thread.matcher(threadName).matches()) &&
+				(this.tag == null || this.tag.matcher(tag).matches());
+		}
+
+		boolean isLimitedPerThread() {
+			return limiters != null && limitPer == LimitScope.Thread;
+		}
+
+		/**
+		 * @return The limiter of the tag or thread, null if the rule has no limits.
+		 */
+		RuleLimiter getLimiter(String tag, String threadName) {
+			if (limiters == null)
+				return null;
+
+			String key = limitPer == LimitScope.Thread ? threadName : tag;
+			RuleLimiter limiter = limiters.get(key);
+			if (limiter != null)
+				return limiter;
+
+			if (limiters.size() >= MaxCachedRoutes)
+				limiters.clear();
+
+			String description = (maxPerSecond > 0 ? "max " + maxPerSecond + "/s, " : "") +
+				(sampleRate > 1 ? "1 in " + sampleRate + " sampled, " : "") +
+				limitPer.name().toLowerCase() + ": " + key;
+			limiter = new RuleLimiter(description, maxPerSecond, sampleRate);
+			RuleLimiter existing = limiters.putIfAbsent(key, limiter);
+			return existing != null ? existing : limiter;
+		}
+
+		void takeSummaries(LoggerClient[] clients, boolean force, List<SuppressedSummary> summaries) {
+			if (limiters == null)
+				return;
+
+			LoggerClient[] ruleClients = null;
+			for (Map.Entry<String, RuleLimiter> entry : limiters.entrySet()) {
+				String summary = entry.getValue().takeSummary(force);
+				if (summary == null)
+					continue;
+
+				if (ruleClients == null) {
+					ruleClients = new LoggerClient[slots.length];
+					for (int i = 0; i < slots.length; i++) {
+						ruleClients[i] = clients[slots[i]];
+					}
+				}
+
+				summaries.add(new SuppressedSummary(ruleClients, limitPer == LimitScope.Tag ? entry.getKey() : SummaryTag, summary));
+			}
+		}
+	}
+
+	private final CompiledRule[] rules;
+	private final LoggerClient[] clients;
+	private final Map<String, LoggerClient> clientsByKey;
+
+	private final BeLoggedMetrics metrics;
+
+	/**
+	 * The threads currently routing with this table.
+	 */
+	private final StripedCounter inFlight = new StripedCounter();
+
+	/**
+	 * When none of the rules refers to a thread or is limited per thread, the thread name takes no part in the routing and the cache is
+	 * keyed by tag alone.
+	 */
+	private final boolean threadSensitive;
+
+	private final boolean hasLimits;
+
+	private final ConcurrentHashMap<String, Route[]> routesByTag = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, Route[]>> routesByTagAndThread = new ConcurrentHashMap<>();
+
+	RoutingTable(Rule[] rules, Map<String, LoggerClient> clients, BeLoggedMetrics metrics) {
+		this(rules, NoLoggerKeys, clients, metrics);
+	}
+
+	/**
+	 * @param defaultLoggerKeys The clients routed to by rules that specify no logger keys.
+	 */
+	RoutingTable(Rule[] rules, String[] defaultLoggerKeys, Map<String, LoggerClient> clients, BeLoggedMetrics metrics) {
+		this.metrics = metrics;
+		this.clientsByKey = Collections.unmodifiableMap(new HashMap<>(clients));
+
+		HashMap<String, Integer> clientSlots = new HashMap<>();
+		ArrayList<LoggerClient> slotted = new ArrayList<>();
+		for (Map.Entry<String, LoggerClient> entry : clientsByKey.entrySet()) {
+			clientSlots.put(entry.getKey(), slotted.size());
+			slotted.add(entry.getValue());
+		}
+		this.clients = ArrayTools.asArray(slotted, LoggerClient.class);
+
+		boolean threadSensitive = false;
+		boolean hasLimits = false;
+		this.rules = new CompiledRule[rules.length];
+		for (int i = 0; i < rules.length; i++) {
+			this.rules[i] = new CompiledRule(rules[i], defaultLoggerKeys, clientSlots);
+			threadSensitive |= this.rules[i].thread != null || this.rules[i].isLimitedPerThread();
+			hasLimits |= this.rules[i].limiters != null;
+		}
+		this.threadSensitive = threadSensitive;
+		this.hasLimits = hasLimits;
+	}
+
+	boolean hasLimits() {
+		return hasLimits;
+	}
+
+	/**
+	 * Takes the summaries of the suppressed entries that no entry let through has reported yet.
+	 *
+	 * @param force true to take them all regardless of the report interval, e.g. once the table is being replaced.
+	 */
+	List<SuppressedSummary> takeSuppressedSummaries(boolean force) {
+		ArrayList<SuppressedSummary> summaries = new ArrayList<>();
+		for (CompiledRule rule : rules) {
+			rule.takeSummaries(clients, force, summaries);
+		}
+		return summaries;
+	}
+
+	LoggerClient getClient(String loggerKey) {
+		return clientsByKey.get(loggerKey);
+	}
+
+	Map<String, LoggerClient> getClients() {
+		return clientsByKey;
+	}
+
+	/**
+	 * Marks the calling thread as routing with this table, every enter MUST be followed by an {@link #exit()}.
+	 */
+	void enter() {
+		inFlight.increment();
+	}
+
+	void exit() {
+		inFlight.add(-1);
+	}
+
+	/**
+	 * Waits for all the threads routing with this table to be done with it, the table must already have been replaced.
+	 *
+	 * @return false if some thread was still routing when the timeout elapsed.
+	 */
+	boolean awaitQuiescence(long timeoutMillis) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		// routing takes microseconds, the wait starts short and backs off for threads that are stuck in a slow client
+		long parkNanos = MinQuiescencePark;
+		while (inFlight.sum() != 0) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0)
+				return false;
+
+			LockSupport.parkNanos(Math.min(parkNanos, remaining));
+			parkNanos = Math.min(parkNanos * 2, MaxQuiescencePark);
+		}
+		return true;
+	}
+
+	LoggerClient[] route(LogLevel level, String tag, String threadName) {
+		return getRoute(level, tag, threadName).clients;
+	}
+
+	Route getRoute(LogLevel level, String tag, String threadName) {
+		Route[] routes;
+		if (threadSensitive) {
+			ConcurrentHashMap<String, Route[]> routesByThread = routesByTagAndThread.get(tag);
+			if (routesByThread == null) {
+				if (routesByTagAndThread.size() >= MaxCachedRoutes)
+					routesByTagAndThread.clear();
+
+				ConcurrentHashMap<String, Route[]> existing = routesByTagAndThread.putIfAbsent(tag, routesByThread = new ConcurrentHashMap<>());
+				if (existing != null)
+					routesByThread = existing;
+			}
+
+			routes = routesByThread.get(threadName);
+			if (routes == null) {
+				if (routesByThread.size() >= MaxCachedRoutes)
+					routesByThread.clear();
+
+				routesByThread.put(threadName, routes = resolve(tag, threadName));
+			}
+		} else {
+			routes = routesByTag.get(tag);
+			if (routes == null) {
+				if (routesByTag.size() >= MaxCachedRoutes)
+					routesByTag.clear();
+
+				routesByTag.put(tag, routes = resolve(tag, null));
+			}
+		}
+
+		return routes[level.ordinal()];
+	}
+
+	/**
+	 * @return A bit per level ordinal, set if any rule could route an entry with the given tag and level to an existing client, regardless of
+	 * the logging thread.
+	 */
+	int getLoggableLevels(String tag) {
+		int loggableLevels = 0;
+		for (CompiledRule rule : rules) {
+			if (rule.tag != null && !rule.tag.matcher(tag).matches())
+				continue;
+
+			if (rule.slots.length == 0)
+				continue;
+
+			for (int level = rule.minLevel; level <= rule.maxLevel; level++) {
+				loggableLevels |= 1 << level;
+			}
+		}
+
+		return loggableLevels;
+	}
+
+	/**
+	 * Walks the rules in order for every level, each client is routed to at most once.
+	 */
+	private Route[] resolve(String tag, String threadName) {
+		long started = System.nanoTime();
+		Route[] routes = new Route[Levels.length];
+		boolean[] matches = new boolean[rules.length];
+		for (int i = 0; i < rules.length; i++) {
+			matches[i] = rules[i].matches(tag, threadName);
+		}
+
+		ArrayList<LoggerClient> resolved = new ArrayList<>();
+		ArrayList<RuleLimiter> limiters = new ArrayList<>();
+		ArrayList<ArrayList<LoggerClient>> groups = new ArrayList<>();
+		BitSet routedSlots = clients.length > 64 ? new BitSet(clients.length) : null;
+		for (LogLevel level : Levels) {
+			resolved.clear();
+			limiters.clear();
+			groups.clear();
+			boolean limited = false;
+			long routedMask = 0;
+			if (routedSlots != null)
+				routedSlots.clear();
+
+			for (int i = 0; i < rules.length; i++) {
+				CompiledRule rule = rules[i];
+				if (!matches[i] || level.ordinal() < rule.minLevel || level.ordinal() > rule.maxLevel)
+					continue;
+
+				RuleLimiter limiter = rule.getLimiter(tag, threadName);
+				int group = limiters.indexOf(limiter);
+
+				for (int slot : rule.slots) {
+					if (routedSlots == null) {
+						if ((routedMask & (1L << slot)) != 0)
+							continue;
+
+						routedMask |= 1L << slot;
+					} else {
+						if (routedSlots.get(slot))
+							continue;
+
+						routedSlots.set(slot);
+					}
+
+					resolved.add(clients[slot]);
+					if (group == -1) {
+						group = limiters.size();
+						limiters.add(limiter);
+						groups.add(new ArrayList<LoggerClient>());
+					}
+
+					groups.get(group).add(clients[slot]);
+					limited |= limiter != null;
+				}
+			}
+
+			routes[level.ordinal()] = createRoute(resolved, limited ? limiters : null, groups);
+		}
+
+		metrics.recordRuleEvaluation(System.nanoTime() - started);
+		return routes;
+	}
+
+	private static Route createRoute(ArrayList<LoggerClient> resolved, ArrayList<RuleLimiter> limiters, ArrayList<ArrayList<LoggerClient>> groups) {
+		if (resolved.isEmpty())
+			return Route.NoRoute;
+
+		LoggerClient[] clients = ArrayTools.asArray(resolved, LoggerClient.class);
+		if (limiters == null)
+			return new Route(clients, null, null);
+
+		LoggerClient[][] _groups = new LoggerClient[groups.size()][];
+		for (int i = 0; i < _groups.length; i++) {
+			_groups[i] = ArrayTools.asArray(groups.get(i), LoggerClient.class);
+		}
+		return new Route(clients, _groups, ArrayTools.asArray(limiters, RuleLimiter.class));
+	}
+}
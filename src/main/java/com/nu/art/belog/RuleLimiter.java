@@ -0,0 +1,148 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nu.art.belog;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enforces the rate limit and the sampling of a rule, for a single tag or thread.
+ * <p>
+ * The rate is enforced with the generic cell rate algorithm, a token bucket reduced to the time at which the bucket would be full
+ * again, so acquiring a token is a single compare and set and involves no refill thread. A burst of up to a second's worth of entries
+ * is allowed.
+ */
+final class RuleLimiter {
+
+	/**
+	 * The minimal interval between two summaries of the suppressed entries.
+	 */
+	private static final long ReportInterval = TimeUnit.SECONDS.toNanos(10);
+
+	/**
+	 * The time source of the limiter, replaced by tests.
+	 */
+	interface Clock {
+
+		long nanoTime();
+	}
+
+	static final Clock SystemClock = new Clock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+	};
+
+	private final Clock clock;
+	private final String description;
+	private final int sampleRate;
+
+	/**
+	 * The time one entry costs, 0 if the rate is not limited.
+	 */
+	private final long emissionInterval;
+	private final long burstTolerance;
+
+	/**
+	 * The theoretical arrival time, once it is further ahead of now than the burst tolerance the bucket is empty.
+	 */
+	private final AtomicLong arrivalTime;
+	private final AtomicLong sampled = new AtomicLong();
+	private final AtomicLong suppressed = new AtomicLong();
+	private final AtomicLong nextReport;
+
+	/**
+	 * @param maxPerSecond The entries allowed per second, 0 for no limit.
+	 * @param sampleRate   One in every sampleRate entries is kept, 0 or 1 to keep them all.
+	 */
+	RuleLimiter(String description, int maxPerSecond, int sampleRate) {
+		this(description, maxPerSecond, sampleRate, SystemClock);
+	}
+
+	RuleLimiter(String description, int maxPerSecond, int sampleRate, Clock clock) {
+		this.clock = clock;
+		this.description = description;
+		this.sampleRate = sampleRate;
+		this.emissionInterval = maxPerSecond <= 0 ? 0 : Math.max(1, TimeUnit.SECONDS.toNanos(1) / maxPerSecond);
+		this.burstTolerance = maxPerSecond <= 0 ? 0 : emissionInterval * (maxPerSecond - 1);
+
+		long now = clock.nanoTime();
+		this.arrivalTime = new AtomicLong(now);
+		this.nextReport = new AtomicLong(now + ReportInterval);
+	}
+
+	/**
+	 * @return false if the entry is sampled out or exceeds the rate, in which case it is counted as suppressed.
+	 */
+	boolean tryAcquire() {
+		if (sampleRate > 1 && sampled.getAndIncrement() % sampleRate != 0) {
+			suppressed.incrementAndGet();
+			return false;
+		}
+
+		if (emissionInterval == 0)
+			return true;
+
+		while (true) {
+			long now = clock.nanoTime();
+			long arrivalTime = this.arrivalTime.get();
+			long newArrivalTime = Math.max(arrivalTime, now) + emissionInterval;
+			if (newArrivalTime - now > burstTolerance + emissionInterval) {
+				suppressed.incrementAndGet();
+				return false;
+			}
+
+			if (this.arrivalTime.compareAndSet(arrivalTime, newArrivalTime))
+				return true;
+		}
+	}
+
+	/**
+	 * Called for entries that were let through, so the summary is written in order with them, and periodically for the suppressed entries
+	 * no entry followed.
+	 *
+	 * @return A summary of the entries suppressed since the previous one, or null if none is due.
+	 */
+	String takeSummary() {
+		return takeSummary(false);
+	}
+
+	/**
+	 * @param force true to take the summary regardless of the report interval, e.g. before the limiter is replaced.
+	 */
+	String takeSummary(boolean force) {
+		if (suppressed.get() == 0)
+			return null;
+
+		long now = clock.nanoTime();
+		long nextReport = this.nextReport.get();
+		if (!force && now - nextReport < 0)
+			return null;
+
+		if (!this.nextReport.compareAndSet(nextReport, now + ReportInterval))
+			return null;
+
+		long count = suppressed.getAndSet(0);
+		if (count == 0)
+			return null;
+
+		return count + " entries suppressed by rule limits (" + description + ")";
+	}
+}
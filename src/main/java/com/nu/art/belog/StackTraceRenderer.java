@@ -0,0 +1,237 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nu.art.belog;
+
+import com.nu.art.core.interfaces.Getter;
+import com.nu.art.core.utils.SynchronizedObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Renders stack traces the way {@link Throwable#printStackTrace()} does, with causes, suppressed throwables and the "... N more" folding
+ * of the frames a cause has in common with the trace that encloses it.
+ * <p>
+ * Traces are cached, keyed by the type, message and frames of every throwable in them, so an exception that is thrown over and over again
+ * costs collecting its frames and a comparison instead of rendering it anew. The cache is a fixed size table in which a trace replaces
+ * the one it collides with.
+ * <p>
+ * The frames rendered per throwable and the depth of the causes can be limited, whatever exceeds the limits is folded as well.
+ */
+public final class StackTraceRenderer {
+
+	/**
+	 * Renders complete traces, and is shared by the composers that are not given a renderer of their own.
+	 */
+	public static final StackTraceRenderer Default = new StackTraceRenderer();
+
+	private static final String CausedBy = "Caused by: ";
+	private static final String Suppressed = "Suppressed: ";
+
+	/**
+	 * Every throwable in the trace takes this many consecutive elements of a key: the caption, the indentation, the header, the frames and
+	 * the number of frames it has in common with its enclosing trace.
+	 */
+	private static final int KeyStride = 5;
+
+	private static final class RenderedTrace {
+
+		final int hash;
+		final Object[] key;
+		final String text;
+
+		RenderedTrace(int hash, Object[] key, String text) {
+			this.hash = hash;
+			this.key = key;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * The key of the trace being rendered, reused by the calling thread.
+	 */
+	private static final class TraceKey {
+
+		final ArrayList<Object> elements = new ArrayList<>();
+		final ArrayList<Throwable> visited = new ArrayList<>();
+
+		int hash() {
+			int hash = 1;
+			for (Object element : elements) {
+				int elementHash = element == null ? 0 : element instanceof StackTraceElement[] ? Arrays.hashCode((StackTraceElement[]) element) : element.hashCode();
+				hash = 31 * hash + elementHash;
+			}
+			return hash;
+		}
+
+		boolean matches(RenderedTrace rendered, int hash) {
+			if (rendered == null || rendered.hash != hash || rendered.key.length != elements.size())
+				return false;
+
+			for (int i = 0; i < rendered.key.length; i++) {
+				Object element = elements.get(i);
+				Object renderedElement = rendered.key[i];
+				if (element instanceof StackTraceElement[]) {
+					if (!(renderedElement instanceof StackTraceElement[]) || !Arrays.equals((StackTraceElement[]) element, (StackTraceElement[]) renderedElement))
+						return false;
+				} else if (element == null ? renderedElement != null : !element.equals(renderedElement))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	private final int maxFrames;
+	private final int maxCauseDepth;
+	private final AtomicReferenceArray<RenderedTrace> cache;
+
+	private final SynchronizedObject<TraceKey> keys = new SynchronizedObject<>(new Getter<TraceKey>() {
+		@Override
+		public TraceKey get() {
+			return new TraceKey();
+		}
+	});
+
+	public StackTraceRenderer() {
+		this(Integer.MAX_VALUE, Integer.MAX_VALUE, 256);
+	}
+
+	/**
+	 * @param maxFrames     The frames rendered per throwable, the rest are counted in its "... N more" line.
+	 * @param maxCauseDepth The levels of causes and suppressed throwables rendered below the top throwable, deeper ones are replaced by a
+	 *                      line that counts them.
+	 * @param cacheSize     The number of traces kept, rounded up to a power of two, 0 to render every trace anew.
+	 */
+	public StackTraceRenderer(int maxFrames, int maxCauseDepth, int cacheSize) {
+		if (maxFrames < 0 || maxCauseDepth < 0 || cacheSize < 0)
+			throw new IllegalArgumentException("Limits MUST NOT be negative");
+
+		this.maxFrames = maxFrames;
+		this.maxCauseDepth = maxCauseDepth;
+		this.cache = cacheSize == 0 ? null : new AtomicReferenceArray<RenderedTrace>(Integer.highestOneBit(Math.max(1, cacheSize * 2 - 1)));
+	}
+
+	/**
+	 * @return The rendered trace, every line of it ends with a line feed.
+	 */
+	public String render(Throwable t) {
+		TraceKey key = keys.get();
+		key.elements.clear();
+		try {
+			collect(key, t, null, "", "", 0);
+		} finally {
+			key.visited.clear();
+		}
+
+		if (cache == null)
+			return render(key.elements);
+
+		int hash = key.hash();
+		int index = (hash ^ hash >>> 16) & (cache.length() - 1);
+		RenderedTrace rendered = cache.get(index);
+		if (key.matches(rendered, hash))
+			return rendered.text;
+
+		String text = render(key.elements);
+		cache.lazySet(index, new RenderedTrace(hash, key.elements.toArray(), text));
+		return text;
+	}
+
+	/**
+	 * Adds the throwable and everything below it to the key, in the order they are rendered.
+	 */
+	private void collect(TraceKey key, Throwable t, StackTraceElement[] enclosingFrames, String caption, String indent, int depth) {
+		for (Throwable visited : key.visited) {
+			if (visited == t) {
+				addElement(key, caption, indent, "[CIRCULAR REFERENCE: " + t + "]", null, 0);
+				return;
+			}
+		}
+
+		if (depth > maxCauseDepth) {
+			addElement(key, caption, indent, "... " + countCauses(t) + " more causes", null, 0);
+			return;
+		}
+
+		key.visited.add(t);
+		StackTraceElement[] frames = t.getStackTrace();
+		addElement(key, caption, indent, t.toString(), frames, enclosingFrames == null ? 0 : countFramesInCommon(frames, enclosingFrames));
+
+		for (Throwable suppressed : t.getSuppressed()) {
+			collect(key, suppressed, frames, Suppressed, indent + "\t", depth + 1);
+		}
+
+		Throwable cause = t.getCause();
+		if (cause != null)
+			collect(key, cause, frames, CausedBy, indent, depth + 1);
+	}
+
+	private static void addElement(TraceKey key, String caption, String indent, String header, StackTraceElement[] frames, int framesInCommon) {
+		key.elements.add(caption);
+		key.elements.add(indent);
+		key.elements.add(header);
+		key.elements.add(frames);
+		key.elements.add(framesInCommon);
+	}
+
+	private static int countFramesInCommon(StackTraceElement[] frames, StackTraceElement[] enclosingFrames) {
+		int m = frames.length - 1;
+		int n = enclosingFrames.length - 1;
+		while (m >= 0 && n >= 0 && frames[m].equals(enclosingFrames[n])) {
+			m--;
+			n--;
+		}
+		return frames.length - 1 - m;
+	}
+
+	private static int countCauses(Throwable t) {
+		int count = 0;
+		ArrayList<Throwable> visited = new ArrayList<>();
+		for (; t != null && !visited.contains(t); t = t.getCause()) {
+			visited.add(t);
+			count++;
+		}
+		return count;
+	}
+
+	private String render(ArrayList<Object> elements) {
+		StringBuilder text = new StringBuilder(256);
+		for (int i = 0; i < elements.size(); i += KeyStride) {
+			String caption = (String) elements.get(i);
+			String indent = (String) elements.get(i + 1);
+			String header = (String) elements.get(i + 2);
+			StackTraceElement[] frames = (StackTraceElement[]) elements.get(i + 3);
+			int framesInCommon = (Integer) elements.get(i + 4);
+
+			text.append(indent).append(caption).append(header).append('\n');
+			if (frames == null)
+				continue;
+
+			int rendered = Math.min(frames.length - framesInCommon, maxFrames);
+			for (int frame = 0; frame < rendered; frame++) {
+				text.append(indent).append("\tat ").append(frames[frame]).append('\n');
+			}
+
+			if (rendered < frames.length)
+				text.append(indent).append("\t... ").append(frames.length - rendered).append(" more\n");
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that spreads concurrent updates over a few cells, each on its own cache line, so producers on different threads do not contend
+ * on a single atomic.
+ */
+final class StripedCounter {
+
+	private static final int Stripes = 8;
+
+	// longs per cell, keeps every cell on a cache line of its own
+	private static final int Padding = 8;
+
+	private final AtomicLongArray cells = new AtomicLongArray(Stripes * Padding);
+
+	void add(long delta) {
+		cells.getAndAdd(((int) Thread.currentThread().getId() & (Stripes - 1)) * Padding, delta);
+	}
+
+	void increment() {
+		add(1);
+	}
+
+	long sum() {
+		long sum = 0;
+		for (int i = 0; i < Stripes; i++) {
+			sum += cells.get(i * Padding);
+		}
+		return sum;
+	}
+}
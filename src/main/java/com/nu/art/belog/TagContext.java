@@ -0,0 +1,156 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.consts.LogLevel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The runtime state BeLogged keeps per tag, shared by all the loggers with that tag.
+ */
+final class TagContext {
+
+	final String tag;
+
+	/**
+	 * A bit per {@link LogLevel} ordinal that might be routed to a client, derived from the global levels and the rules at config time.
+	 */
+	private volatile int loggableLevels;
+
+	/**
+	 * The entry the tag let through last and how many times it was repeated since, only used while repeats are collapsed.
+	 */
+	private final AtomicReference<RepeatRun> lastRun = new AtomicReference<>();
+
+	TagContext(String tag) {
+		this.tag = tag;
+	}
+
+	void setLoggableLevels(int loggableLevels) {
+		this.loggableLevels = loggableLevels;
+	}
+
+	boolean isLoggable(LogLevel level) {
+		return (loggableLevels & (1 << level.ordinal())) != 0;
+	}
+
+	/**
+	 * An entry is a repeat of the previous entry of the tag if it has the same level and message template, and is logged within the window
+	 * since the previous entry was let through. The params, fields and throwable take no part in the comparison.
+	 * <p>
+	 * Lock free, a repeat costs a CAS on the counter of the current run, and an entry that ends the run a CAS of the run itself.
+	 *
+	 * @return {@link RepeatedEntry#Repeat} if the entry is a repeat and should only be counted, a summary of the previous entry if it was
+	 * repeated and the entry ends the run, otherwise null.
+	 */
+	RepeatedEntry collapse(LogLevel level, String message, long timestamp, long windowMillis) {
+		RepeatRun newRun = null;
+		while (true) {
+			RepeatRun run = lastRun.get();
+			if (run != null && run.level == level && message.equals(run.message) && timestamp - run.loggedAt < windowMillis) {
+				if (run.countRepeat())
+					return RepeatedEntry.Repeat;
+
+				// the run was just ended by another thread
+				continue;
+			}
+
+			if (newRun == null)
+				newRun = new RepeatRun(level, message, timestamp);
+
+			if (!lastRun.compareAndSet(run, newRun))
+				continue;
+
+			return run == null ? null : run.end();
+		}
+	}
+
+	/**
+	 * Ends the current run if its window elapsed, so the repeats of a burst that no other entry followed are reported as well.
+	 *
+	 * @param windowMillis The repeat window, 0 to end the current run regardless of its age.
+	 * @return A summary of the run if it was repeated, otherwise null.
+	 */
+	RepeatedEntry flushRepeats(long timestamp, long windowMillis) {
+		RepeatRun run = lastRun.get();
+		if (run == null || timestamp - run.loggedAt < windowMillis)
+			return null;
+
+		// an entry that ended the run in the meantime reports it
+		if (!lastRun.compareAndSet(run, null))
+			return null;
+
+		return run.end();
+	}
+
+	private static final class RepeatRun {
+
+		private static final int Ended = -1;
+
+		final LogLevel level;
+		final String message;
+		final long loggedAt;
+
+		private final AtomicInteger repeats = new AtomicInteger();
+
+		RepeatRun(LogLevel level, String message, long loggedAt) {
+			this.level = level;
+			this.message = message;
+			this.loggedAt = loggedAt;
+		}
+
+		/**
+		 * @return false if the run was ended, the repeat then belongs to the run that replaced it.
+		 */
+		boolean countRepeat() {
+			while (true) {
+				int count = repeats.get();
+				if (count == Ended)
+					return false;
+
+				if (repeats.compareAndSet(count, count + 1))
+					return true;
+			}
+		}
+
+		/**
+		 * Called once by the thread that replaced the run, repeats counted until then are all reported.
+		 */
+		RepeatedEntry end() {
+			int count = repeats.getAndSet(Ended);
+			return count == 0 ? null : new RepeatedEntry(level, count);
+		}
+	}
+
+	static final class RepeatedEntry {
+
+		static final RepeatedEntry Repeat = new RepeatedEntry(null, 0);
+
+		final LogLevel level;
+		final int repeats;
+
+		private RepeatedEntry(LogLevel level, int repeats) {
+			this.level = level;
+			this.repeats = repeats;
+		}
+	}
+}
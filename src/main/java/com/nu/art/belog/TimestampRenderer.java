@@ -0,0 +1,110 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.core.interfaces.Getter;
+import com.nu.art.core.utils.SynchronizedObject;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Renders timestamps as "yyyy-MM-dd HH:mm:ss.SSSZ" without locking.
+ * <p>
+ * The "yyyy-MM-dd HH:mm:ss." prefix and the zone suffix are formatted once per second and cached as UTF-8 bytes, every call after that
+ * only writes the millisecond digits.
+ */
+public final class TimestampRenderer {
+
+	private static final class RenderedSecond {
+
+		final long second;
+		final byte[] prefix;
+		final byte[] suffix;
+
+		RenderedSecond(long second, String prefix, String suffix) {
+			this.second = second;
+			this.prefix = toBytes(prefix);
+			this.suffix = toBytes(suffix);
+		}
+
+		private static byte[] toBytes(String value) {
+			// the rendered date is always ASCII
+			byte[] bytes = new byte[value.length()];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = (byte) value.charAt(i);
+			}
+			return bytes;
+		}
+	}
+
+	private final SynchronizedObject<SimpleDateFormat[]> formats;
+
+	// a few consecutive seconds, so entries that arrive slightly out of order do not thrash the cache
+	private final AtomicReferenceArray<RenderedSecond> rendered = new AtomicReferenceArray<>(4);
+
+	public TimestampRenderer() {
+		this(TimeZone.getDefault());
+	}
+
+	public TimestampRenderer(final TimeZone timeZone) {
+		formats = new SynchronizedObject<>(new Getter<SimpleDateFormat[]>() {
+			@Override
+			public SimpleDateFormat[] get() {
+				SimpleDateFormat prefixFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.");
+				SimpleDateFormat suffixFormat = new SimpleDateFormat("Z");
+				prefixFormat.setTimeZone(timeZone);
+				suffixFormat.setTimeZone(timeZone);
+				return new SimpleDateFormat[]{
+					prefixFormat,
+					suffixFormat
+				};
+			}
+		});
+	}
+
+	public void render(LogBuffer buffer, long timestamp) {
+		long second = timestamp / 1000;
+		int millis = (int) (timestamp % 1000);
+		if (millis < 0) {
+			second -= 1;
+			millis += 1000;
+		}
+
+		int index = (int) (second & 3);
+		RenderedSecond rendered = this.rendered.get(index);
+		if (rendered == null || rendered.second != second)
+			this.rendered.lazySet(index, rendered = renderSecond(second));
+
+		buffer.append(rendered.prefix, 0, rendered.prefix.length);
+		buffer.appendByte('0' + millis / 100);
+		buffer.appendByte('0' + millis / 10 % 10);
+		buffer.appendByte('0' + millis % 10);
+		buffer.append(rendered.suffix, 0, rendered.suffix.length);
+	}
+
+	private RenderedSecond renderSecond(long second) {
+		SimpleDateFormat[] formats = this.formats.get();
+		Date date = new Date(second * 1000);
+		return new RenderedSecond(second, formats[0].format(date), formats[1].format(date));
+	}
+}
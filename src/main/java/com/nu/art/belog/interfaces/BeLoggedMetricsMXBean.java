@@ -0,0 +1,53 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.interfaces;
+
+/**
+ * The runtime metrics of the routing in BeLogged, as exposed over JMX.
+ */
+public interface BeLoggedMetricsMXBean {
+
+	/**
+	 * @return The number of calls that reached BeLogged and were routed to at least one client.
+	 */
+	long getRoutedCount();
+
+	/**
+	 * @return The number of calls that reached BeLogged and were dropped by the global levels or the rules.
+	 */
+	long getFilteredCount();
+
+	/**
+	 * @return The number of times an entry was held back from the clients of a rule by its rate limit or sampling.
+	 */
+	long getSuppressedCount();
+
+	/**
+	 * @return The number of entries that repeated the previous entry of their tag, and were only counted.
+	 */
+	long getCollapsedCount();
+
+	/**
+	 * @return The number of times the rules were evaluated for a tag and thread that were not cached yet.
+	 */
+	long getRuleEvaluationCount();
+
+	long getRuleEvaluationTimeMicros();
+}
@@ -0,0 +1,61 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.interfaces;
+
+/**
+ * The runtime metrics of a single logger client, as exposed over JMX.
+ */
+public interface LoggerMetricsMXBean {
+
+	String getKey();
+
+	/**
+	 * @return The number of entries routed to the client.
+	 */
+	long getAcceptedCount();
+
+	long getDroppedCount();
+
+	long getWrittenCount();
+
+	long getBytesWritten();
+
+	long getErrorCount();
+
+	/**
+	 * @return The number of entries waiting to be written, 0 for clients that write on the calling thread.
+	 */
+	int getQueueDepth();
+
+	/**
+	 * @return The number of enqueue to write latencies per bucket, bucket i counts latencies below 2^i microseconds.
+	 */
+	long[] getLatencyHistogram();
+
+	long getLatencyP50Micros();
+
+	long getLatencyP99Micros();
+
+	long getLatencyMaxMicros();
+
+	long getRotationCount();
+
+	long getRotationTimeMillis();
+}
@@ -0,0 +1,65 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nu.art.belog.loggers;
+
+/**
+ * The bytes kept on disk by the archives of a {@link FileLogger}, by archive index.
+ * <p>
+ * The sizes are read from disk once, and then follow the archives as they are shifted, so enforcing a total size involves no directory
+ * listing. Only the rotation worker uses it.
+ */
+final class ArchiveRetention {
+
+	// by archive index, index 0 is the segment being written and is not tracked
+	private final long[] sizes;
+	private long total;
+
+	ArchiveRetention(int count) {
+		sizes = new long[count];
+	}
+
+	void set(int index, long size) {
+		total += size - sizes[index];
+		sizes[index] = size;
+	}
+
+	/**
+	 * Follows the archives moving one index up, the one at the last index is gone.
+	 */
+	void shift() {
+		total -= sizes[sizes.length - 1];
+		System.arraycopy(sizes, 1, sizes, 2, sizes.length - 2);
+		sizes[1] = 0;
+	}
+
+	long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return The index of the oldest archive, 0 if there is none.
+	 */
+	int getOldest() {
+		for (int i = sizes.length - 1; i > 0; i--) {
+			if (sizes[i] > 0)
+				return i;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.BeConfig.LoggerConfig;
+import com.nu.art.belog.LogFields;
+import com.nu.art.belog.LoggerClient;
+import com.nu.art.belog.consts.LogLevel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorates a client that writes on the logging thread with a {@link LogEntryRing} and a thread of its own, used for configs marked
+ * as {@link LoggerConfig#async async}.
+ * <p>
+ * Logging threads never wait for the decorated client: entries that do not fit in the queue are dropped and counted, and the number of
+ * dropped entries is reported through the decorated client itself.
+ */
+public final class AsyncLoggerClient<Config extends LoggerConfig>
+	extends LoggerClient<Config> {
+
+	private static final long DropReportInterval = TimeUnit.SECONDS.toMillis(10);
+
+	private static final long DrainTimeout = TimeUnit.SECONDS.toMillis(10);
+
+	private volatile boolean enable = true;
+
+	private LogEntryRing ring;
+
+	private Thread writerThread;
+
+	private Thread exitDrain;
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	// owned by the writer thread
+	private long reportedDropped;
+	private long nextDropReport;
+
+	private final Runnable writer = new Runnable() {
+		@Override
+		public void run() {
+			while (true) {
+				LogEntry logEntry = ring.poll();
+				if (logEntry == null) {
+					// the last report is written before the logger goes away
+					reportDropped(!enable);
+					if (!enable)
+						break;
+
+					ring.awaitEntries();
+					continue;
+				}
+
+				try {
+					logDecorated(logEntry.timestamp, logEntry.level, logEntry.thread, logEntry.tag, logEntry.message, logEntry.params, logEntry.fields, logEntry.t);
+					getMetrics().recordLatency(System.nanoTime() - logEntry.enqueued);
+				} catch (Throwable e) {
+					getMetrics().recordError();
+					System.err.println("AsyncLoggerClient '" + config.key + "': Error writing log: " + logEntry);
+					e.printStackTrace();
+				} finally {
+					ring.release(logEntry);
+				}
+
+				reportDropped(false);
+			}
+		}
+	};
+
+	public AsyncLoggerClient(LoggerClient<Config> client) {
+		super(client);
+		setConfig(client.getConfig());
+	}
+
+	@Override
+	protected void init() {
+		ring = new LogEntryRing(config.asyncQueueSize);
+		writerThread = new Thread(writer, "Async logger - " + config.key);
+		// does not keep the application alive, the queue is drained on dispose or when the application exits
+		writerThread.setDaemon(true);
+		writerThread.start();
+		exitDrain = ExitDrain.register(writerThread.getName(), new Runnable() {
+			@Override
+			public void run() {
+				if (enable)
+					dispose();
+			}
+		});
+	}
+
+	/**
+	 * Stops accepting entries, waits for the writer to drain the ones already queued and then disposes the decorated client.
+	 */
+	@Override
+	protected void dispose() {
+		enable = false;
+		ExitDrain.unregister(exitDrain);
+		ring.wakeConsumer();
+		if (Thread.currentThread() != writerThread)
+			try {
+				writerThread.join(DrainTimeout);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+		disposeDecorated();
+	}
+
+	@Override
+	protected boolean isAsynchronous() {
+		return true;
+	}
+
+	@Override
+	protected int getQueueDepth() {
+		return ring.size();
+	}
+
+	/**
+	 * @return The number of entries dropped so far because the queue was full.
+	 */
+	public final long getDroppedCount() {
+		return dropped.get();
+	}
+
+	@Override
+	protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+		enqueue(timestamp, level, thread, tag, message, null, null, t);
+	}
+
+	@Override
+	protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, Throwable t) {
+		// formatted by the writer thread
+		enqueue(timestamp, level, thread, tag, message, params, null, t);
+	}
+
+	@Override
+	protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, LogFields fields, Throwable t) {
+		enqueue(timestamp, level, thread, tag, message, null, fields, t);
+	}
+
+	private void enqueue(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, LogFields fields, Throwable t) {
+		if (!enable)
+			return;
+
+		if (ring.offer(timestamp, level, thread, tag, message, params, fields, t))
+			return;
+
+		dropped.incrementAndGet();
+		getMetrics().recordDropped();
+	}
+
+	/**
+	 * Logs a summary of the entries dropped since the last report, at most once per report interval unless forced.
+	 */
+	private void reportDropped(boolean force) {
+		long now = System.currentTimeMillis();
+		if (!force && now < nextDropReport)
+			return;
+
+		long count = dropped.get();
+		long delta = count - reportedDropped;
+		if (delta == 0)
+			return;
+
+		nextDropReport = now + DropReportInterval;
+		reportedDropped = count;
+		logDecorated(now, LogLevel.Warning, writerThread, config.key, delta + " entries dropped, async queue was full", null, null, null);
+	}
+}
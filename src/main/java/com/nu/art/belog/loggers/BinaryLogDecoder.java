@@ -0,0 +1,281 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.DefaultLogComposer;
+import com.nu.art.belog.LogBuffer;
+import com.nu.art.belog.consts.LogLevel;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+
+import static com.nu.art.belog.loggers.BinaryLogEncoder.Magic;
+import static com.nu.art.belog.loggers.BinaryLogEncoder.Record_End;
+import static com.nu.art.belog.loggers.BinaryLogEncoder.Record_Entry;
+import static com.nu.art.belog.loggers.BinaryLogEncoder.Record_Header;
+import static com.nu.art.belog.loggers.BinaryLogEncoder.Record_Tag;
+import static com.nu.art.belog.loggers.BinaryLogEncoder.Record_Thread;
+import static com.nu.art.belog.loggers.BinaryLogEncoder.Version;
+
+/**
+ * Reads back the binary log format written by the {@link FileLogger} with {@link FileLogger.FileFormat#Binary}.
+ * <p>
+ * A segment is a sequence of records, each starts with a type byte and ends with a '\n' byte:
+ * <ul>
+ * <li>Header: "BELOG" and a version byte, resets the dictionaries and the timestamp base.</li>
+ * <li>Tag / Thread: a string, defines the next id of the tag / thread name dictionary.</li>
+ * <li>Entry (type + level ordinal): zig-zag var-length timestamp delta from the previous entry, tag id, thread id, message and stack trace.</li>
+ * </ul>
+ * Strings are a var-length byte count + 1, where 0 stands for null, followed by the UTF-8 bytes.
+ * <p>
+ * Usage as a tool: BinaryLogDecoder &lt;file.blog | file.blog.gz | file.zip&gt;... renders the entries as text to the standard output.
+ */
+public class BinaryLogDecoder {
+
+	private static final LogLevel[] Levels = LogLevel.values();
+
+	private final InputStream inputStream;
+	private final ArrayList<String> tags = new ArrayList<>();
+	private final ArrayList<String> threads = new ArrayList<>();
+	private byte[] stringBuffer = new byte[256];
+
+	private long timestamp;
+	private LogLevel level;
+	private String tag;
+	private String threadName;
+	private String message;
+	private String stackTrace;
+
+	public BinaryLogDecoder(InputStream inputStream) {
+		this.inputStream = inputStream instanceof BufferedInputStream ? inputStream : new BufferedInputStream(inputStream);
+	}
+
+	/**
+	 * Reads up to the next entry, a record cut short at the end of the stream, e.g. after a crash, is ignored.
+	 *
+	 * @return false when there are no more entries.
+	 */
+	public boolean next()
+		throws IOException {
+		try {
+			while (true) {
+				int recordType = inputStream.read();
+				// the end of the stream, or of the written part of a segment that was memory mapped
+				if (recordType <= 0)
+					return false;
+
+				switch (recordType) {
+					case Record_Header:
+						readHeader();
+						break;
+
+					case Record_Tag:
+						tags.add(readString());
+						break;
+
+					case Record_Thread:
+						threads.add(readString());
+						break;
+
+					default:
+						if (recordType < Record_Entry || recordType >= Record_Entry + Levels.length)
+							throw new IOException("Unknown record type: " + recordType);
+
+						readEntry(Levels[recordType - Record_Entry]);
+						readRecordEnd();
+						return true;
+				}
+
+				readRecordEnd();
+			}
+		} catch (EOFException e) {
+			return false;
+		}
+	}
+
+	private void readHeader()
+		throws IOException {
+		byte[] magic = new byte[Magic.length];
+		readFully(magic, magic.length);
+		if (!Arrays.equals(magic, Magic))
+			throw new IOException("Not a belog binary log");
+
+		int version = readByte();
+		if (version != Version)
+			throw new IOException("Unsupported belog binary log version: " + version);
+
+		tags.clear();
+		threads.clear();
+		timestamp = 0;
+	}
+
+	private void readEntry(LogLevel level)
+		throws IOException {
+		long zigZag = readVarLong();
+		timestamp += (zigZag >>> 1) ^ -(zigZag & 1);
+		this.level = level;
+		tag = tags.get((int) readVarLong());
+		threadName = threads.get((int) readVarLong());
+		message = readString();
+		stackTrace = readString();
+	}
+
+	private void readRecordEnd()
+		throws IOException {
+		if (readByte() != Record_End)
+			throw new IOException("Corrupted record");
+	}
+
+	private String readString()
+		throws IOException {
+		int length = (int) readVarLong() - 1;
+		if (length < 0)
+			return null;
+
+		if (stringBuffer.length < length)
+			stringBuffer = new byte[Math.max(length, stringBuffer.length * 2)];
+
+		readFully(stringBuffer, length);
+		return new String(stringBuffer, 0, length, "UTF-8");
+	}
+
+	private long readVarLong()
+		throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed var-length number");
+	}
+
+	private int readByte()
+		throws IOException {
+		int b = inputStream.read();
+		if (b < 0)
+			throw new EOFException();
+
+		return b;
+	}
+
+	private void readFully(byte[] bytes, int length)
+		throws IOException {
+		int offset = 0;
+		while (offset < length) {
+			int read = inputStream.read(bytes, offset, length - offset);
+			if (read < 0)
+				throw new EOFException();
+
+			offset += read;
+		}
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public LogLevel getLevel() {
+		return level;
+	}
+
+	public String getTag() {
+		return tag;
+	}
+
+	public String getThreadName() {
+		return threadName;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public String getStackTrace() {
+		return stackTrace;
+	}
+
+	/**
+	 * Renders the current entry exactly as the {@link DefaultLogComposer} would have written it as text.
+	 */
+	public void renderTo(LogBuffer buffer, DefaultLogComposer composer) {
+		composer.composeEntry(buffer, timestamp, level, threadName, tag, message, stackTrace);
+	}
+
+	/**
+	 * Renders all the entries in the binary input as text to the output.
+	 */
+	public static void decode(InputStream inputStream, OutputStream outputStream)
+		throws IOException {
+		BinaryLogDecoder decoder = new BinaryLogDecoder(inputStream);
+		DefaultLogComposer composer = new DefaultLogComposer();
+		LogBuffer buffer = new LogBuffer();
+		while (decoder.next()) {
+			decoder.renderTo(buffer, composer);
+			if (buffer.size() < 64 * 1024)
+				continue;
+
+			buffer.writeTo(outputStream);
+			buffer.reset();
+		}
+
+		buffer.writeTo(outputStream);
+		outputStream.flush();
+	}
+
+	public static void main(String[] args)
+		throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: BinaryLogDecoder <file.blog | file.blog.gz | file.zip>...");
+			return;
+		}
+
+		for (String path : args) {
+			InputStream inputStream = new FileInputStream(path);
+			try {
+				if (path.endsWith(".zip")) {
+					ZipInputStream zipInputStream = new ZipInputStream(inputStream);
+					inputStream = zipInputStream;
+					while (zipInputStream.getNextEntry() != null) {
+						decode(zipInputStream, System.out);
+					}
+					continue;
+				}
+
+				// a live segment ends where the last sync flush did, which the decoder sees as the end of the input
+				if (path.endsWith(".gz"))
+					inputStream = new GZIPInputStream(inputStream, 64 * 1024);
+
+				decode(inputStream, System.out);
+			} finally {
+				inputStream.close();
+			}
+		}
+	}
+}
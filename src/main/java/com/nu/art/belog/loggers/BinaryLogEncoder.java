@@ -0,0 +1,145 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.LogBuffer;
+import com.nu.art.belog.consts.LogLevel;
+
+import java.util.HashMap;
+
+/**
+ * Encodes entries in the compact binary format, see {@link BinaryLogDecoder} for the layout.
+ * <p>
+ * Keeps the per segment dictionaries, so a single instance must be used by a single writer thread.
+ */
+final class BinaryLogEncoder {
+
+	static final byte[] Magic = {
+		'B',
+		'E',
+		'L',
+		'O',
+		'G'
+	};
+
+	static final int Version = 1;
+
+	static final int Record_Header = 0x01;
+	static final int Record_Tag = 0x02;
+	static final int Record_Thread = 0x03;
+	/**
+	 * The level ordinal is added to it.
+	 */
+	static final int Record_Entry = 0x10;
+	static final int Record_End = '\n';
+
+	/**
+	 * Past that many distinct tags or thread names in a segment, the dictionaries start over with a new header.
+	 */
+	private static final int MaxDictionarySize = 64 * 1024;
+
+	private final HashMap<String, Integer> tags = new HashMap<>();
+	private final HashMap<String, Integer> threads = new HashMap<>();
+	private final LogBuffer scratch = new LogBuffer(256);
+
+	private boolean headerWritten;
+	private long lastTimestamp;
+
+	/**
+	 * Must be called whenever the entries start going to a new segment, which must be decodable on its own.
+	 */
+	void reset() {
+		headerWritten = false;
+	}
+
+	void encode(LogBuffer buffer, long timestamp, LogLevel level, String threadName, String tag, String message, String stackTrace) {
+		if (!headerWritten || tags.size() >= MaxDictionarySize || threads.size() >= MaxDictionarySize)
+			writeHeader(buffer);
+
+		int tagId = getId(buffer, tags, Record_Tag, tag);
+		int threadId = getId(buffer, threads, Record_Thread, threadName);
+
+		buffer.appendByte(Record_Entry + level.ordinal());
+		writeVarLong(buffer, zigZag(timestamp - lastTimestamp));
+		writeVarLong(buffer, tagId);
+		writeVarLong(buffer, threadId);
+		writeString(buffer, message);
+		writeString(buffer, stackTrace);
+		buffer.appendByte(Record_End);
+		lastTimestamp = timestamp;
+	}
+
+	private void writeHeader(LogBuffer buffer) {
+		tags.clear();
+		threads.clear();
+		lastTimestamp = 0;
+		headerWritten = true;
+
+		buffer.appendByte(Record_Header);
+		buffer.append(Magic, 0, Magic.length);
+		buffer.appendByte(Version);
+		buffer.appendByte(Record_End);
+	}
+
+	private int getId(LogBuffer buffer, HashMap<String, Integer> dictionary, int recordType, String value) {
+		if (value == null)
+			value = "null";
+
+		Integer id = dictionary.get(value);
+		if (id != null)
+			return id;
+
+		// ids are implicit, the n-th definition in a segment gets id n
+		id = dictionary.size();
+		dictionary.put(value, id);
+
+		buffer.appendByte(recordType);
+		writeString(buffer, value);
+		buffer.appendByte(Record_End);
+		return id;
+	}
+
+	/**
+	 * A var-length byte count + 1, so 0 stands for null, followed by the UTF-8 bytes.
+	 */
+	private void writeString(LogBuffer buffer, String value) {
+		if (value == null) {
+			buffer.appendByte(0);
+			return;
+		}
+
+		scratch.reset();
+		scratch.append(value);
+		writeVarLong(buffer, scratch.size() + 1);
+		buffer.append(scratch);
+	}
+
+	static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static void writeVarLong(LogBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.appendByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.appendByte((int) value);
+	}
+}
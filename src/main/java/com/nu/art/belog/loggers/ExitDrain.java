@@ -0,0 +1,51 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+/**
+ * Drains the clients whose writer is a daemon thread when the application exits, so the entries still queued, often the last error
+ * before a crash, are not lost.
+ */
+final class ExitDrain {
+
+	private ExitDrain() {}
+
+	/**
+	 * @param dispose Called once the application is exiting, unless the hook was unregistered by then.
+	 *
+	 * @return The hook, to be handed to {@link #unregister(Thread)} once the client is disposed.
+	 */
+	static Thread register(String name, Runnable dispose) {
+		Thread hook = new Thread(dispose, name + " drain");
+		Runtime.getRuntime().addShutdownHook(hook);
+		return hook;
+	}
+
+	static void unregister(Thread hook) {
+		if (hook == null || Thread.currentThread() == hook)
+			return;
+
+		try {
+			Runtime.getRuntime().removeShutdownHook(hook);
+		} catch (IllegalStateException ignore) {
+			// the application is already exiting, the hook drains what is left
+		}
+	}
+}
@@ -22,8 +22,11 @@ package com.nu.art.belog.loggers;
 import com.nu.art.belog.BeConfig;
 import com.nu.art.belog.BeConfig.LoggerConfig;
 import com.nu.art.belog.BeConfig.Rule;
+import com.nu.art.belog.LogBuffer;
+import com.nu.art.belog.LogFields;
 import com.nu.art.belog.LoggerClient;
 import com.nu.art.belog.LoggerDescriptor;
+import com.nu.art.belog.StackTraceRenderer;
 import com.nu.art.belog.consts.LogLevel;
 import com.nu.art.belog.loggers.FileLogger.Config_FileLogger;
 import com.nu.art.core.exceptions.runtime.BadImplementationException;
@@ -31,16 +34,21 @@ import com.nu.art.core.exceptions.runtime.BugSerachException;
 import com.nu.art.core.tools.ArrayTools;
 import com.nu.art.core.tools.FileTools;
 import com.nu.art.core.tools.SizeTools;
-import com.nu.art.core.utils.InstanceRecycler;
-import com.nu.art.core.utils.InstanceRecycler.Instantiator;
-import com.nu.art.core.utils.PoolQueue;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileFilter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 public class FileLogger
 	extends LoggerClient<Config_FileLogger> {
@@ -49,47 +57,290 @@ public class FileLogger
 	public static final Config_FileLogger LogConfig_FileLogger = (Config_FileLogger) new Config_FileLogger().setKey(Config_FileLogger.KEY);
 	public static final BeConfig Config_FastFileLogger = new BeConfig().setRules(Rule_AllToFileLogger).setLoggersConfig(LogConfig_FileLogger);
 
-	private Throwable failure;
-	private boolean enable = true;
+	private volatile Throwable failure;
+	private volatile boolean enable = true;
 
-	private volatile OutputStreamWriter logWriter;
+	private volatile LogOutput output;
+
+	// owned by the writer thread
+	private final LogBuffer buffer = new LogBuffer(8 * 1024);
+	private BinaryLogEncoder binaryEncoder;
+	private LogIndexWriter indexWriter;
 
 	private long written;
 
-	private PoolQueue<LogEntry> queue = new PoolQueue<LogEntry>() {
+	// when the segment is due for rotation by the rotation interval, 0 if there is none
+	private long nextRotation;
+
+	private LogEntryRing ring;
+
+	private Thread writerThread;
+
+	// with more than a single lane, entries are handed to the lane of the logging thread, each lane writes its own files
+	private FileLogger[] lanes;
+
+	// the current batch, owned by the writer thread
+	private int batchCount;
+	private long batchDeadline;
+	private long[] batchEnqueued = new long[64];
+	private int batchEnqueuedCount;
+
+	/**
+	 * The time source of the batch deadline, replaced by tests.
+	 */
+	interface Clock {
+
+		long nanoTime();
+	}
+
+	static final Clock SystemClock = new Clock() {
 		@Override
-		protected void onExecutionError(LogEntry item, Throwable e) {
-			logError("Error writing log: " + item, e);
+		public long nanoTime() {
+			return System.nanoTime();
 		}
+	};
+
+	// package private so tests can drive the flush delay
+	Clock clock = SystemClock;
 
+	// package private so tests can tell when the writer wrote all it could and is about to wait for more
+	volatile Runnable idleListener;
+
+	private static final long DropReportInterval = TimeUnit.SECONDS.toMillis(10);
+
+	private static final long DrainTimeout = TimeUnit.SECONDS.toMillis(10);
+
+	// how long a producer waits for the room made with DropOldest before it drops its own entry
+	private static final int MaxEvictAttempts = 100;
+	private static final long EvictParkInterval = TimeUnit.MICROSECONDS.toNanos(50);
+
+	// entries dropped on overflow, by the policy that dropped them
+	private final AtomicLongArray dropped = new AtomicLongArray(OverflowPolicy.values().length);
+
+	// owned by the writer thread
+	private final long[] reportedDropped = new long[OverflowPolicy.values().length];
+	private long nextDropReport;
+
+	private final Runnable writer = new Runnable() {
 		@Override
-		protected void executeAction(LogEntry logEntry) {
+		public void run() {
 			try {
-				String logMessage = composer.composeEntry(logEntry.timestamp, logEntry.level, logEntry.thread, logEntry.tag, logEntry.message, logEntry.t);
-				try {
-					logWriter.write(logMessage);
-					logWriter.flush();
-				} catch (Exception e) {
-					disable(new BugSerachException("Error writing log to file", e));
-					return;
-				}
+				while (true) {
+					LogEntry logEntry = ring.poll();
+					if (logEntry == null) {
+						// the last report is written before the logger goes away
+						appendDropReport(!enable);
+						long waitNanos = batchCount == 0 ? Long.MAX_VALUE : batchDeadline - clock.nanoTime();
+						if (waitNanos <= 0 || !enable) {
+							flushBatch();
+							waitNanos = Long.MAX_VALUE;
+						}
+
+						if (batchCount == 0) {
+							idleOutput();
+							// a quiet segment is rotated on time as well, rather than with the next entry
+							if (enable && isRotationDue())
+								rotateSegment();
+						}
+
+						if (!enable)
+							break;
+
+						Runnable idleListener = FileLogger.this.idleListener;
+						if (idleListener != null)
+							idleListener.run();
+
+						ring.awaitEntries(Math.min(waitNanos, getNanosToRotation()));
+						continue;
+					}
 
-				written += logMessage.getBytes().length;
-				if (written >= config.size) {
 					try {
-						rotate();
-					} catch (Exception e) {
-						disable(new BugSerachException("Error rotating files", e));
+						appendEntry(logEntry.timestamp, logEntry.level, logEntry.thread, logEntry.tag, logEntry.message, logEntry.params, logEntry.fields, logEntry.t);
+						trackLatency(logEntry.enqueued);
+					} catch (Throwable e) {
+						logError("Error writing log: " + logEntry, e);
+					} finally {
+						ring.release(logEntry);
+					}
+
+					if (batchCount >= config.batchSize || written + buffer.size() >= config.size) {
+						appendDropReport(false);
+						flushBatch();
 					}
+
+					// nothing more can be written once the output failed
+					if (failure != null)
+						break;
 				}
 			} finally {
-				recycler.recycle(logEntry);
-				if (queue.getItemsCount() == 0 && !enable)
-					queue.kill();
+				// producers still waiting for room must not wait for a writer that is gone
+				ring.close();
+				closeLogOutput();
+				rotationWorker.shutdown();
 			}
 		}
 	};
 
+	private void appendEntry(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, LogFields fields, Throwable t) {
+		if (batchCount++ == 0)
+			batchDeadline = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.flushDelay);
+
+		if (indexWriter != null)
+			indexWriter.onEntry(written + buffer.size(), timestamp, level, tag);
+
+		message = formatMessage(message, params);
+		if (binaryEncoder != null) {
+			// the binary format has no notion of fields, they are kept as key=value text
+			String stackTrace = t == null ? null : StackTraceRenderer.Default.render(t);
+			binaryEncoder.encode(buffer, timestamp, level, thread.getName(), tag, formatMessage(message, fields), stackTrace);
+			return;
+		}
+
+		composeEntry(buffer, timestamp, level, thread, tag, message, fields, t);
+	}
+
+	private void trackLatency(long enqueued) {
+		if (batchEnqueuedCount == batchEnqueued.length)
+			batchEnqueued = Arrays.copyOf(batchEnqueued, batchEnqueued.length * 2);
+
+		batchEnqueued[batchEnqueuedCount++] = enqueued;
+	}
+
+	/**
+	 * Writes a summary of the entries dropped since the last report into the log itself, at most once per report interval unless forced.
+	 */
+	private void appendDropReport(boolean force) {
+		long now = System.currentTimeMillis();
+		if (!force && now < nextDropReport)
+			return;
+
+		nextDropReport = now + DropReportInterval;
+		long total = 0;
+		StringBuilder details = new StringBuilder();
+		for (OverflowPolicy policy : OverflowPolicy.values()) {
+			long count = dropped.get(policy.ordinal());
+			long delta = count - reportedDropped[policy.ordinal()];
+			if (delta == 0)
+				continue;
+
+			reportedDropped[policy.ordinal()] = count;
+			total += delta;
+			details.append(details.length() == 0 ? "" : ", ").append(policy).append(": ").append(delta);
+		}
+
+		if (total == 0)
+			return;
+
+		appendEntry(now, LogLevel.Warning, writerThread, config.key, total + " entries dropped, queue was full (" + details + ")", null, null, null);
+	}
+
+	private void idleOutput() {
+		LogOutput output = this.output;
+		if (output == null)
+			return;
+
+		try {
+			output.idle();
+		} catch (IOException e) {
+			disable(new BugSerachException("Error writing log to file", e));
+		}
+	}
+
+	/**
+	 * An empty segment is never rotated, its rotation is postponed to the next interval instead.
+	 */
+	private boolean isRotationDue() {
+		if (nextRotation == 0)
+			return false;
+
+		long now = System.currentTimeMillis();
+		if (now < nextRotation)
+			return false;
+
+		if (written > 0)
+			return true;
+
+		nextRotation = getNextRotation(config.rotationInterval, now);
+		return false;
+	}
+
+	private long getNanosToRotation() {
+		if (nextRotation == 0 || written == 0)
+			return Long.MAX_VALUE;
+
+		return TimeUnit.MILLISECONDS.toNanos(Math.max(0, nextRotation - System.currentTimeMillis()));
+	}
+
+	/**
+	 * @return The start of the interval that follows the one the timestamp is in, in the default time zone, 0 if there is no interval.
+	 */
+	static long getNextRotation(RotationInterval interval, long timestamp) {
+		if (interval == RotationInterval.None)
+			return 0;
+
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(timestamp);
+		calendar.set(Calendar.MILLISECOND, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		if (interval == RotationInterval.Daily) {
+			calendar.set(Calendar.HOUR_OF_DAY, 0);
+			calendar.add(Calendar.DAY_OF_MONTH, 1);
+		} else
+			calendar.add(Calendar.HOUR_OF_DAY, 1);
+
+		return calendar.getTimeInMillis();
+	}
+
+	private void rotateSegment() {
+		try {
+			rotate();
+		} catch (Exception e) {
+			disable(new BugSerachException("Error rotating files", e));
+		}
+	}
+
+	/**
+	 * Writes all the entries composed so far with a single write, and rotates if the file got too big or its interval is over.
+	 */
+	private void flushBatch() {
+		if (batchCount == 0)
+			return;
+
+		try {
+			output.write(buffer);
+			output.flush();
+			if (indexWriter != null)
+				indexWriter.flush();
+
+			long now = System.nanoTime();
+			for (int i = 0; i < batchEnqueuedCount; i++) {
+				getMetrics().recordLatency(now - batchEnqueued[i]);
+			}
+			getMetrics().recordWritten(batchCount, buffer.size());
+		} catch (Exception e) {
+			disable(new BugSerachException("Error writing log to file", e));
+			return;
+		} finally {
+			written += buffer.size();
+			buffer.reset();
+			batchCount = 0;
+			batchEnqueuedCount = 0;
+		}
+
+		if (written >= config.size || isRotationDue())
+			rotateSegment();
+	}
+
+	private static final String PendingInfix = "pending";
+
+	private ExecutorService rotationWorker;
+	private final List<File> pendingArchives = new CopyOnWriteArrayList<>();
+	private int rotationCounter;
+
+	// owned by the rotation worker
+	private ArchiveRetention retention;
+
 	private FileLoggerRotationListener postRotationListener;
 
 	/**
@@ -106,21 +357,56 @@ public class FileLogger
 		return this;
 	}
 
+	/**
+	 * Stops accepting entries, and waits for the writer to drain the ones already queued and close the file, and for the
+	 * rotated segments to be archived.
+	 */
 	@Override
 	protected void dispose() {
 		enable = false;
+		if (lanes != null) {
+			for (FileLogger lane : lanes) {
+				lane.dispose();
+			}
+			return;
+		}
+
+		if (ring == null)
+			return;
+
+		ring.wakeConsumer();
+		if (Thread.currentThread() == writerThread)
+			return;
+
+		long deadline = System.currentTimeMillis() + DrainTimeout;
+		try {
+			writerThread.join(DrainTimeout);
+			// the writer shuts the rotation worker down on its way out
+			rotationWorker.awaitTermination(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
 	}
 
-	private void disable(Throwable t) {
-		logError("DISABLING FILE LOGGER");
-		logError(t.getMessage());
-		t.printStackTrace();
+	// package private so tests can simulate a failing output
+	void disable(Throwable t) {
+		// disabled before the error is counted, whoever sees the error also sees the logger disabled
 		failure = t;
 		enable = false;
+		logError("DISABLING FILE LOGGER: " + t.getMessage(), t);
+		// the writer may be parked waiting for entries, it is not around yet if the logger failed during init
+		LogEntryRing ring = this.ring;
+		if (ring != null)
+			ring.wakeConsumer();
 	}
 
 	@Override
 	protected void init() {
+		if (config.lanes > 1) {
+			initLanes();
+			return;
+		}
+
 		try {
 			FileTools.mkDir(config.folder);
 		} catch (IOException e) {
@@ -128,57 +414,350 @@ public class FileLogger
 			return;
 		}
 
+		adoptIndexPadding();
+		if (config.format == FileFormat.Binary)
+			binaryEncoder = new BinaryLogEncoder();
+
 		File logFile = getLogTextFile(0);
 		try {
-			createLogWriter(logFile);
+			// a compressed segment is never appended to, the one left by a previous run is archived along with the other leftovers
+			if (config.compression == Compression.Gzip && logFile.exists())
+				moveAside(logFile);
+
+			createLogOutput(logFile);
 		} catch (IOException e) {
-			disable(new BugSerachException("Cannot create new logWriter for file: " + logFile.getAbsolutePath(), e));
+			disable(new BugSerachException("Cannot create new log output for file: " + logFile.getAbsolutePath(), e));
 		}
 
+		rotationWorker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				return new Thread(runnable, "File logger rotation");
+			}
+		});
+		rotationWorker.execute(new Runnable() {
+			@Override
+			public void run() {
+				initRetention();
+			}
+		});
+		archiveLeftovers();
+
 		logInfo("initializing");
-		// Starting the queue after the setup is completed
-		queue.createThreads("File logger", 1);
+		// Starting the writer after the setup is completed
+		ring = new LogEntryRing(config.queueCapacity);
+		writerThread = new Thread(writer, "File logger - " + config.key);
+		writerThread.start();
+	}
+
+	private void initLanes() {
+		lanes = new FileLogger[config.lanes];
+		for (int i = 0; i < lanes.length; i++) {
+			FileLogger lane = new FileLogger();
+			lane.setConfig(createLaneConfig(i));
+			lane.setComposer(composer);
+			lane.postRotationListener = postRotationListener;
+			shareMetrics(lane);
+			lane.init();
+			lanes[i] = lane;
+		}
+	}
+
+	private Config_FileLogger createLaneConfig(int lane) {
+		Config_FileLogger laneConfig = config.clone().setFileName(getLaneFileName(config.fileName, lane)).setLanes(1).setMaxTotalSize(config.maxTotalSize / lanes.length);
+		laneConfig.setKey(config.key + "#" + lane);
+		return laneConfig;
+	}
+
+	/**
+	 * The settings applied to a running logger, e.g. the flush delay, are passed on to every lane.
+	 */
+	@Override
+	protected void onConfigUpdated() {
+		if (lanes == null)
+			return;
+
+		for (int i = 0; i < lanes.length; i++) {
+			lanes[i].setConfig(createLaneConfig(i));
+		}
+	}
+
+	static String getLaneFileName(String fileName, int lane) {
+		return fileName + "-lane" + lane;
 	}
 
+	private FileLogger getLane(Thread thread) {
+		return lanes[(int) ((thread.getId() & Long.MAX_VALUE) % lanes.length)];
+	}
+
+	/**
+	 * Closes the current segment, moves it aside and opens a fresh one, the archiving and shifting of older files happens on the rotation
+	 * worker.
+	 */
 	public void rotate()
 		throws IOException {
-		logInfo("rotating files");
+		if (lanes != null) {
+			for (FileLogger lane : lanes) {
+				lane.rotate();
+			}
+			return;
+		}
 
-		FileTools.delete(getLogZipFile(config.count - 1));
+		long started = System.nanoTime();
+		logInfo("rotating files");
 
-		for (int i = config.count - 2; i >= 0; i--) {
-			rotateFile(i);
-		}
+		// the segment must be complete on disk before it is archived
+		closeLogOutput();
 
 		File file = getLogTextFile(0);
-		FileTools.delete(file);
-		createLogWriter(file);
+		File pendingFile = moveAside(file);
+		createLogOutput(file);
+		archiveAsync(pendingFile, started);
+	}
+
+	/**
+	 * Renames the segment, along with its index, to the next pending name.
+	 */
+	private File moveAside(File file)
+		throws IOException {
+		File pendingFile = new File(config.folder, String.format("%s-%s-%d-%04d.%s", config.fileName, PendingInfix, System.currentTimeMillis(), rotationCounter, getSegmentSuffix()));
+		rotationCounter = (rotationCounter + 1) % 10000;
+
+		FileTools.renameFile(file, pendingFile);
+		moveIndex(file, pendingFile);
+		return pendingFile;
+	}
+
+	/**
+	 * @param started When the rotation began, the rotation time reported to the metrics spans until the archive exists.
+	 */
+	private void archiveAsync(final File pendingFile, final long started) {
+		pendingArchives.add(pendingFile);
+		rotationWorker.execute(new Runnable() {
+			@Override
+			public void run() {
+				archive(pendingFile, started);
+			}
+		});
+	}
 
+	/**
+	 * A compressed segment is already an archive, it is only renamed into place.
+	 */
+	private void archive(File pendingFile, long started) {
+		try {
+			FileTools.delete(getArchiveFile(config.count - 1));
+			FileTools.delete(LogIndex.getIndexFile(getArchiveFile(config.count - 1)));
+
+			for (int i = config.count - 2; i > 0; i--) {
+				rotateFile(i);
+			}
+
+			retention.shift();
+			if (config.compression == Compression.Gzip) {
+				FileTools.renameFile(pendingFile, getArchiveFile(1));
+				moveIndex(pendingFile, getArchiveFile(1));
+			} else {
+				File logZipFile = getLogZipFile(0);
+				FileTools.archive(logZipFile, pendingFile);
+				FileTools.renameFile(logZipFile, getLogZipFile(1));
+				moveIndex(pendingFile, getLogZipFile(1));
+				FileTools.delete(pendingFile);
+			}
+
+			retention.set(1, getRetainedSize(1));
+			enforceTotalSize();
+		} catch (Exception e) {
+			logError("Error archiving rotated file: " + pendingFile.getName(), e);
+			return;
+		} finally {
+			pendingArchives.remove(pendingFile);
+		}
+
+		getMetrics().recordRotation(System.nanoTime() - started);
 		if (postRotationListener != null)
-			postRotationListener.onLogFileRotated(this, getLogZipFile(1));
+			postRotationListener.onLogFileRotated(this, getArchiveFile(1));
+	}
+
+	private void initRetention() {
+		retention = new ArchiveRetention(config.count);
+		for (int i = 1; i < config.count; i++) {
+			retention.set(i, getRetainedSize(i));
+		}
+
+		try {
+			enforceTotalSize();
+		} catch (IOException e) {
+			logError("Error deleting archives over the total size", e);
+		}
+	}
+
+	/**
+	 * @return The bytes the archive at the given index and its index take on disk, along with a segment left there unarchived by an older
+	 * version.
+	 */
+	private long getRetainedSize(int index) {
+		File archive = getArchiveFile(index);
+		long size = archive.length() + LogIndex.getIndexFile(archive).length();
+		if (config.compression != Compression.Gzip)
+			size += getLogTextFile(index).length() + LogIndex.getIndexFile(getLogTextFile(index)).length();
+		return size;
+	}
+
+	/**
+	 * Deletes the oldest archives until the archives fit in the total size along with a full segment, the newest archive is always kept.
+	 */
+	private void enforceTotalSize()
+		throws IOException {
+		if (config.maxTotalSize == 0)
+			return;
+
+		long maxArchivedSize = config.maxTotalSize - config.size;
+		for (int oldest = retention.getOldest(); oldest > 1 && retention.getTotal() > maxArchivedSize; oldest = retention.getOldest()) {
+			File archive = getArchiveFile(oldest);
+			logInfo("deleting " + archive.getName() + ", the archives exceed the total size");
+			FileTools.delete(archive);
+			FileTools.delete(LogIndex.getIndexFile(archive));
+			if (config.compression != Compression.Gzip) {
+				FileTools.delete(getLogTextFile(oldest));
+				FileTools.delete(LogIndex.getIndexFile(getLogTextFile(oldest)));
+			}
+
+			retention.set(oldest, 0);
+		}
+	}
+
+	/**
+	 * Segments that were moved aside but never archived, e.g. due to a crash, are archived in the order they were rotated.
+	 */
+	private void archiveLeftovers() {
+		final String prefix = config.fileName + "-" + PendingInfix + "-";
+		final String suffix = "." + getSegmentSuffix();
+		File[] leftovers = new File(config.folder).listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.getName().startsWith(prefix) && file.getName().endsWith(suffix);
+			}
+		});
+
+		if (leftovers == null)
+			return;
+
+		Arrays.sort(leftovers);
+		for (File leftover : leftovers) {
+			archiveAsync(leftover, System.nanoTime());
+		}
+	}
+
+	/**
+	 * The index in the file names is padded to the digits of the count, files left by a run with a count of another number of digits are
+	 * renamed to the current padding, so they are rotated and retained along with the rest.
+	 */
+	private void adoptIndexPadding() {
+		final String prefix = config.fileName + "-";
+		File[] files = new File(config.folder).listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.getName().startsWith(prefix);
+			}
+		});
+
+		if (files == null)
+			return;
+
+		for (File file : files) {
+			String name = file.getName().substring(prefix.length());
+			int dot = name.indexOf('.');
+			if (dot <= 0 || dot > 9 || !isDigits(name.substring(0, dot)))
+				continue;
+
+			String index = name.substring(0, dot);
+			String paddedIndex = getIndexAsString(Integer.parseInt(index));
+			if (paddedIndex.equals(index) || Integer.parseInt(index) >= config.count)
+				continue;
+
+			File target = new File(config.folder, prefix + paddedIndex + name.substring(dot));
+			if (target.exists())
+				continue;
+
+			try {
+				FileTools.renameFile(file, target);
+			} catch (IOException e) {
+				logError("Cannot rename " + file.getName() + " to the current index padding", e);
+			}
+		}
+	}
+
+	private static boolean isDigits(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (!Character.isDigit(s.charAt(i)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The index of a segment follows it when it is renamed or archived, a stale index of the target is removed.
+	 */
+	private static void moveIndex(File segment, File target)
+		throws IOException {
+		File index = LogIndex.getIndexFile(segment);
+		File targetIndex = LogIndex.getIndexFile(target);
+		if (index.exists())
+			FileTools.renameFile(index, targetIndex);
+		else if (targetIndex.exists())
+			FileTools.delete(targetIndex);
 	}
 
-	private void createLogWriter(File logFile)
+	private void createLogOutput(File logFile)
 		throws IOException {
 		if (logFile.exists())
 			FileTools.createNewFile(logFile);
 
-		written = logFile.length();
-		OutputStreamWriter oldLogWriter = this.logWriter;
-		logWriter = new OutputStreamWriter(new FileOutputStream(logFile, true));
+		closeLogOutput();
+		long lastModified = logFile.lastModified();
+		LogOutput output = LogOutput.create(config.output, config.compression, config.size);
+		written = output.open(logFile);
+		// a segment appended to belongs to the interval it was last written in
+		nextRotation = getNextRotation(config.rotationInterval, written > 0 && lastModified > 0 ? lastModified : System.currentTimeMillis());
+		indexWriter = new LogIndexWriter(logFile, written > 0);
+		this.output = output;
+
+		if (binaryEncoder != null)
+			binaryEncoder.reset();
+	}
 
-		if (oldLogWriter == null)
+	private void closeLogOutput() {
+		LogOutput output = this.output;
+		if (output == null)
 			return;
 
+		this.output = null;
 		try {
-			oldLogWriter.flush();
-			oldLogWriter.close();
+			output.flush();
+			output.close();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+
+		LogIndexWriter indexWriter = this.indexWriter;
+		if (indexWriter == null)
+			return;
+
+		this.indexWriter = null;
+		try {
+			indexWriter.close(written);
+		} catch (IOException e) {
+			logError("Error closing the index of the log file", e);
+		}
 	}
 
 	private void rotateFile(int index) {
+		if (config.compression == Compression.Gzip) {
+			shiftSegment(index);
+			return;
+		}
+
 		File logTextFile = getLogTextFile(index);
 		File logZipFile = getLogZipFile(index);
 		File newLogZipFile = getLogZipFile(index + 1);
@@ -188,18 +767,51 @@ public class FileLogger
 			if (!logTextFile.exists() && !logZipFile.exists())
 				return;
 
-			if (logTextFile.exists())
+			boolean archived = logTextFile.exists();
+			if (archived) {
 				FileTools.archive(logZipFile, logTextFile);
+				moveIndex(logTextFile, logZipFile);
+			}
 
 			FileTools.renameFile(logZipFile, newLogZipFile);
+			moveIndex(logZipFile, newLogZipFile);
+			if (archived && retention != null)
+				retention.set(index + 1, getRetainedSize(index + 1));
 		} catch (Exception e) {
 			logError("Cannot rotate file from: " + logZipFile.getName() + " ==> " + newLogZipFile.getName() + "\n");
 			disable(e);
 		}
 	}
 
+	private void shiftSegment(int index) {
+		File segment = getLogTextFile(index);
+		File newSegment = getLogTextFile(index + 1);
+		try {
+			if (!segment.exists())
+				return;
+
+			FileTools.renameFile(segment, newSegment);
+			moveIndex(segment, newSegment);
+		} catch (Exception e) {
+			logError("Cannot rotate file from: " + segment.getName() + " ==> " + newSegment.getName() + "\n");
+			disable(e);
+		}
+	}
+
 	private File getLogTextFile(int i) {
-		return getFile(i, "txt");
+		return getFile(i, getSegmentSuffix());
+	}
+
+	private String getSegmentSuffix() {
+		String suffix = config.format == FileFormat.Binary ? "blog" : "txt";
+		return config.compression == Compression.Gzip ? suffix + ".gz" : suffix;
+	}
+
+	/**
+	 * @return The file a rotated segment is kept in at the given index.
+	 */
+	private File getArchiveFile(int i) {
+		return config.compression == Compression.Gzip ? getLogTextFile(i) : getLogZipFile(i);
 	}
 
 	private File getLogZipFile(int i) {
@@ -223,6 +835,14 @@ public class FileLogger
 	}
 
 	public final File[] getAllLogFiles() {
+		if (lanes != null) {
+			File[] files = {};
+			for (FileLogger lane : lanes) {
+				files = ArrayTools.appendElements(files, lane.getAllLogFiles());
+			}
+			return files;
+		}
+
 		List<File> filesToZip = new ArrayList<>();
 		for (int i = 0; i < config.count; i++) {
 			File file = getLogTextFile(i);
@@ -234,23 +854,219 @@ public class FileLogger
 				filesToZip.add(file);
 		}
 
+		filesToZip.addAll(pendingArchives);
 		return ArrayTools.asArray(filesToZip, File.class);
 	}
 
-	private InstanceRecycler<LogEntry> recycler = new InstanceRecycler<>(new Instantiator<LogEntry>() {
-		@Override
-		public LogEntry create() {
-			return new LogEntry();
+	/**
+	 * @return The number of entries dropped so far by the given overflow policy, for {@link OverflowPolicy#Block} these are the entries
+	 * that timed out.
+	 */
+	public final long getDroppedCount(OverflowPolicy policy) {
+		if (lanes == null)
+			return dropped.get(policy.ordinal());
+
+		long count = 0;
+		for (FileLogger lane : lanes) {
+			count += lane.getDroppedCount(policy);
 		}
-	});
+		return count;
+	}
+
+	/**
+	 * Opens a reader of all the entries written so far, oldest first, across lanes when the logger is striped.
+	 */
+	public final LaneMergeReader openMergeReader()
+		throws IOException {
+		return query(null);
+	}
+
+	/**
+	 * Same as {@link #openMergeReader()}, yielding only the entries that match the query. The index written next to every segment is
+	 * used to skip archives that cannot match, and the parts of text segments that cannot match.
+	 */
+	public final LaneMergeReader query(LogQuery query)
+		throws IOException {
+		return LaneMergeReader.open(new File(config.folder), config.fileName, config.lanes, config.format, query);
+	}
 
 	@Override
 	protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+		if (lanes != null)
+			getLane(thread).log(timestamp, level, thread, tag, message, t);
+		else
+			enqueue(timestamp, level, thread, tag, message, null, null, t);
+	}
+
+	@Override
+	protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, Throwable t) {
+		// formatted by the writer thread
+		if (lanes != null)
+			getLane(thread).log(timestamp, level, thread, tag, message, params, t);
+		else
+			enqueue(timestamp, level, thread, tag, message, params, null, t);
+	}
+
+	@Override
+	protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, LogFields fields, Throwable t) {
+		// composed with the fields by the writer thread
+		if (lanes != null)
+			getLane(thread).log(timestamp, level, thread, tag, message, fields, t);
+		else
+			enqueue(timestamp, level, thread, tag, message, null, fields, t);
+	}
+
+	@Override
+	protected boolean isAsynchronous() {
+		return true;
+	}
+
+	@Override
+	protected int getQueueDepth() {
+		if (lanes != null) {
+			int depth = 0;
+			for (FileLogger lane : lanes) {
+				depth += lane.getQueueDepth();
+			}
+			return depth;
+		}
+
+		LogEntryRing ring = this.ring;
+		return ring == null ? 0 : ring.size();
+	}
+
+	private void enqueue(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, LogFields fields, Throwable t) {
 		if (!enable)
 			return;
 
-		LogEntry instance = recycler.getInstance().set(timestamp, level, thread, tag, message, t);
-		queue.addItem(instance);
+		if (ring.offer(timestamp, level, thread, tag, message, params, fields, t))
+			return;
+
+		OverflowPolicy policy = config.overflowPolicy;
+		switch (policy) {
+			case DropNewest:
+				break;
+
+			case DropOldest:
+				// a single entry is evicted per insert, and none while the writer holds on to the slot the next claim needs
+				if (ring.evictOldest())
+					onDropped(OverflowPolicy.DropOldest);
+
+				for (int attempt = 1; attempt <= MaxEvictAttempts && !ring.isClosed(); attempt++) {
+					if (ring.offer(timestamp, level, thread, tag, message, params, fields, t))
+						return;
+
+					// the room went to another producer, or the writer is yet to be done with the entry it holds
+					if (attempt < MaxEvictAttempts / 2)
+						Thread.yield();
+					else
+						LockSupport.parkNanos(EvictParkInterval);
+				}
+
+				// the entry itself is dropped rather than racing the other producers forever
+				break;
+
+			case DropBelowLevel:
+				if (level.ordinal() < config.dropLevel.ordinal())
+					break;
+
+				// entries at or above the drop level wait for room like with Block
+				policy = OverflowPolicy.Block;
+
+			default:
+				if (config.blockTimeout == 0) {
+					if (ring.put(timestamp, level, thread, tag, message, params, fields, t))
+						return;
+
+					break;
+				}
+
+				if (ring.offer(timestamp, level, thread, tag, message, params, fields, t, TimeUnit.MILLISECONDS.toNanos(config.blockTimeout)))
+					return;
+		}
+
+		onDropped(policy);
+	}
+
+	private void onDropped(OverflowPolicy policy) {
+		dropped.incrementAndGet(policy.ordinal());
+		getMetrics().recordDropped();
+	}
+
+	public enum OutputMode {
+		/**
+		 * A plain FileOutputStream, the default.
+		 */
+		Stream,
+		/**
+		 * A FileChannel fed from a direct ByteBuffer.
+		 */
+		Channel,
+		/**
+		 * The segment is memory mapped up to the configured size and appended by position, then truncated to its real length on rotation.
+		 */
+		Mapped,
+	}
+
+	/**
+	 * What a producer does when the queue of entries waiting to be written is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The producer waits for room, for up to the block timeout, after which the entry is dropped. The default.
+		 */
+		Block,
+		/**
+		 * The entry being logged is dropped.
+		 */
+		DropNewest,
+		/**
+		 * The oldest entry waiting to be written is dropped to make room for the new one, a single entry per insert. When that makes no room,
+		 * e.g. while the writer is stuck on the entry it holds, the new entry is dropped.
+		 */
+		DropOldest,
+		/**
+		 * Entries below the drop level are dropped, the rest wait for room like with {@link #Block}.
+		 */
+		DropBelowLevel,
+	}
+
+	public enum RotationInterval {
+		/**
+		 * Segments are rotated by size alone, the default.
+		 */
+		None,
+		/**
+		 * Segments are also rotated at the start of every hour.
+		 */
+		Hourly,
+		/**
+		 * Segments are also rotated at midnight.
+		 */
+		Daily,
+	}
+
+	public enum Compression {
+		/**
+		 * Segments are written as is and zipped once they are rotated, the default.
+		 */
+		None,
+		/**
+		 * The segment is gzip compressed as it is written, with sync points that keep a segment cut short by a crash readable. Rotated
+		 * segments are only renamed.
+		 */
+		Gzip,
+	}
+
+	public enum FileFormat {
+		/**
+		 * Human readable lines, composed by the logger's composer.
+		 */
+		Text,
+		/**
+		 * A compact binary format with interned tags and thread names, read it back with the {@link BinaryLogDecoder}.
+		 */
+		Binary,
 	}
 
 	public static class FileLoggerDescriptor
@@ -275,6 +1091,42 @@ public class FileLogger
 			if (config.count < 3)
 				throw new BadImplementationException("Rotation count MUST be >= 3");
 
+			if (config.queueCapacity < 2)
+				throw new BadImplementationException("Queue capacity MUST be >= 2");
+
+			if (config.lanes < 1)
+				throw new BadImplementationException("Lanes MUST be >= 1");
+
+			if (config.batchSize < 1)
+				throw new BadImplementationException("Batch size MUST be >= 1");
+
+			if (config.flushDelay < 0)
+				throw new BadImplementationException("Flush delay MUST be >= 0");
+
+			if (config.blockTimeout < 0)
+				throw new BadImplementationException("Block timeout MUST be >= 0");
+
+			if (config.maxTotalSize != 0 && config.maxTotalSize < 2 * config.size * config.lanes)
+				throw new BadImplementationException("Total size MUST be 0 or at least twice the file size for every lane");
+
+			if (config.rotationInterval == null)
+				config.rotationInterval = RotationInterval.None;
+
+			if (config.overflowPolicy == null)
+				config.overflowPolicy = OverflowPolicy.Block;
+
+			if (config.dropLevel == null)
+				config.dropLevel = LogLevel.Info;
+
+			if (config.output == null)
+				config.output = OutputMode.Stream;
+
+			if (config.format == null)
+				config.format = FileFormat.Text;
+
+			if (config.compression == null)
+				config.compression = Compression.None;
+
 			if (config.fileName == null)
 				config.fileName = "logger-" + config.key;
 		}
@@ -289,6 +1141,18 @@ public class FileLogger
 		String fileName;
 		long size = 10 * SizeTools.MegaByte;
 		int count = 10;
+		RotationInterval rotationInterval = RotationInterval.None;
+		long maxTotalSize;
+		int queueCapacity = 8 * 1024;
+		int lanes = 1;
+		int batchSize = 1;
+		long flushDelay;
+		OutputMode output = OutputMode.Stream;
+		Compression compression = Compression.None;
+		FileFormat format = FileFormat.Text;
+		OverflowPolicy overflowPolicy = OverflowPolicy.Block;
+		long blockTimeout;
+		LogLevel dropLevel = LogLevel.Info;
 
 		public Config_FileLogger() {
 			super(KEY);
@@ -314,6 +1178,96 @@ public class FileLogger
 			return this;
 		}
 
+		/**
+		 * @param rotationInterval Segments are rotated when the interval is over as well as when they reach the size, empty segments are not.
+		 */
+		public Config_FileLogger setRotationInterval(RotationInterval rotationInterval) {
+			this.rotationInterval = rotationInterval;
+			return this;
+		}
+
+		/**
+		 * @param maxTotalSize The bytes the files of the logger may take on disk, the oldest archives are deleted to stay within it before
+		 *                     the count would. Room for a full segment is kept, so it MUST be at least twice the size for every lane. 0 for no
+		 *                     limit.
+		 */
+		public Config_FileLogger setMaxTotalSize(long maxTotalSize) {
+			this.maxTotalSize = maxTotalSize;
+			return this;
+		}
+
+		/**
+		 * @param queueCapacity The number of preallocated entries waiting to be written, rounded up to a power of two.
+		 */
+		public Config_FileLogger setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+			return this;
+		}
+
+		/**
+		 * @param lanes The number of independent writers, each with its own queue and files, entries are spread across them by the logging
+		 *              thread. Read the lanes back in order with the {@link LaneMergeReader}.
+		 */
+		public Config_FileLogger setLanes(int lanes) {
+			this.lanes = lanes;
+			return this;
+		}
+
+		/**
+		 * @param batchSize The max number of entries the writer drains and writes with a single write, 1 writes every entry on its own.
+		 */
+		public Config_FileLogger setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		/**
+		 * @param flushDelay The max time in ms a partial batch waits for more entries before it is written.
+		 */
+		public Config_FileLogger setFlushDelay(long flushDelay) {
+			this.flushDelay = flushDelay;
+			return this;
+		}
+
+		public Config_FileLogger setOutput(OutputMode output) {
+			this.output = output;
+			return this;
+		}
+
+		/**
+		 * @param compression With {@link Compression#Gzip} the output mode is ignored, and the size applies to the uncompressed segment.
+		 */
+		public Config_FileLogger setCompression(Compression compression) {
+			this.compression = compression;
+			return this;
+		}
+
+		public Config_FileLogger setFormat(FileFormat format) {
+			this.format = format;
+			return this;
+		}
+
+		public Config_FileLogger setOverflowPolicy(OverflowPolicy overflowPolicy) {
+			this.overflowPolicy = overflowPolicy;
+			return this;
+		}
+
+		/**
+		 * @param blockTimeout The max time in ms a producer waits for room in a full queue before its entry is dropped, 0 waits forever.
+		 */
+		public Config_FileLogger setBlockTimeout(long blockTimeout) {
+			this.blockTimeout = blockTimeout;
+			return this;
+		}
+
+		/**
+		 * @param dropLevel With {@link OverflowPolicy#DropBelowLevel}, entries below this level are dropped when the queue is full.
+		 */
+		public Config_FileLogger setDropLevel(LogLevel dropLevel) {
+			this.dropLevel = dropLevel;
+			return this;
+		}
+
 		@Override
 		public boolean equals(Object o) {
 			if (this == o)
@@ -329,6 +1283,40 @@ public class FileLogger
 			if (folder != null ? !folder.equals(that.folder) : that.folder != null)
 				return false;
 
+			if (lanes != that.lanes)
+				return false;
+
+			// the files, retention and queue are laid out by these when the logger is initialized
+			if (size != that.size)
+				return false;
+
+			if (count != that.count)
+				return false;
+
+			if (rotationInterval != that.rotationInterval)
+				return false;
+
+			if (maxTotalSize != that.maxTotalSize)
+				return false;
+
+			if (queueCapacity != that.queueCapacity)
+				return false;
+
+			if (batchSize != that.batchSize)
+				return false;
+
+			if (output != that.output)
+				return false;
+
+			if (overflowPolicy != that.overflowPolicy)
+				return false;
+
+			if (compression != that.compression)
+				return false;
+
+			if (format != that.format)
+				return false;
+
 			return fileName != null ? fileName.equals(that.fileName) : that.fileName == null;
 		}
 
@@ -336,13 +1324,39 @@ public class FileLogger
 		public int hashCode() {
 			int result = folder != null ? folder.hashCode() : 0;
 			result = 31 * result + (fileName != null ? fileName.hashCode() : 0);
+			result = 31 * result + lanes;
+			result = 31 * result + (int) (size ^ (size >>> 32));
+			result = 31 * result + count;
+			result = 31 * result + rotationInterval.hashCode();
+			result = 31 * result + (int) (maxTotalSize ^ (maxTotalSize >>> 32));
+			result = 31 * result + queueCapacity;
+			result = 31 * result + batchSize;
+			result = 31 * result + output.hashCode();
+			result = 31 * result + overflowPolicy.hashCode();
+			result = 31 * result + compression.hashCode();
+			result = 31 * result + format.hashCode();
 			return result;
 		}
 
 		@Override
 		@SuppressWarnings("MethodDoesntCallSuperMethod")
 		public Config_FileLogger clone() {
-			return new Config_FileLogger().setFileName(fileName).setFolder(folder).setCount(count).setSize(size);
+			return new Config_FileLogger().setFileName(fileName)
+			                              .setFolder(folder)
+			                              .setCount(count)
+			                              .setSize(size)
+			                              .setRotationInterval(rotationInterval)
+			                              .setMaxTotalSize(maxTotalSize)
+			                              .setQueueCapacity(queueCapacity)
+			                              .setLanes(lanes)
+			                              .setBatchSize(batchSize)
+			                              .setFlushDelay(flushDelay)
+			                              .setOutput(output)
+			                              .setCompression(compression)
+			                              .setFormat(format)
+			                              .setOverflowPolicy(overflowPolicy)
+			                              .setBlockTimeout(blockTimeout)
+			                              .setDropLevel(dropLevel);
 		}
 	}
 
@@ -355,6 +1369,7 @@ public class FileLogger
 	}
 
 	public void logError(String log, Throwable e) {
+		getMetrics().recordError();
 		System.err.println("FileLogger '" + config.key + "' (" + Thread.currentThread().getName() + "): " + log);
 		if (e != null)
 			e.printStackTrace();
@@ -363,9 +1378,10 @@ public class FileLogger
 	public interface FileLoggerRotationListener {
 
 		/**
-		 * ***<b>Any work with the log file should be offloaded to a new thread, instead of the Belog thread.</b>***
+		 * Called on the rotation worker once the archive of the rotated segment exists.<br>
+		 * ***<b>Any work with the log file should be offloaded to a new thread, instead of the rotation worker.</b>***
 		 *
-		 * @param fileLogger  The FileLogger object that dispatched the rotation event.
+		 * @param fileLogger  The FileLogger object that dispatched the rotation event, with lanes this is the lane that rotated.
 		 * @param rotatedFile The file that just got filled up with log lines over the allowed size aka the "last fully baked" log file.
 		 */
 		void onLogFileRotated(FileLogger fileLogger, File rotatedFile);
@@ -373,5 +1389,11 @@ public class FileLogger
 
 	public void setPostRotationListener(FileLoggerRotationListener postRotationListener) {
 		this.postRotationListener = postRotationListener;
+		if (lanes == null)
+			return;
+
+		for (FileLogger lane : lanes) {
+			lane.setPostRotationListener(postRotationListener);
+		}
 	}
 }
\ No newline at end of file
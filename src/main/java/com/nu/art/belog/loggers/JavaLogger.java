@@ -22,13 +22,30 @@ package com.nu.art.belog.loggers;
 import com.nu.art.belog.BeConfig;
 import com.nu.art.belog.BeConfig.LoggerConfig;
 import com.nu.art.belog.BeConfig.Rule;
+import com.nu.art.belog.LogBuffer;
+import com.nu.art.belog.LogFields;
 import com.nu.art.belog.LoggerClient;
 import com.nu.art.belog.LoggerDescriptor;
 import com.nu.art.belog.consts.LogLevel;
 import com.nu.art.belog.loggers.JavaLogger.Config_JavaLogger;
+import com.nu.art.core.exceptions.runtime.BadImplementationException;
+import com.nu.art.core.interfaces.Getter;
+import com.nu.art.core.utils.SynchronizedObject;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by TacB0sS on 28-Feb 2017.
+ * <p>
+ * By default every entry is printed to {@link System#out} or {@link System#err} on the logging thread. In {@link Config_JavaLogger#setBuffered(boolean)
+ * buffered} mode entries are queued, and a writer thread composes them into batches written with a single write straight to the standard
+ * output or error file descriptor, bypassing the synchronized, flush-per-line print streams.
  */
 
 public class JavaLogger
@@ -38,20 +55,230 @@ public class JavaLogger
 	public static final LoggerConfig LogConfig_JavaLogger = new Config_JavaLogger().setKey(Config_JavaLogger.KEY);
 	public static final BeConfig Config_FastJavaLogger = new BeConfig().setRules(Rule_AllToJavaLogger).setLoggersConfig(LogConfig_JavaLogger);
 
+	private static final long DrainTimeout = TimeUnit.SECONDS.toMillis(10);
+
+	private volatile boolean enable = true;
+
+	private LogEntryRing ring;
+
+	private Thread writerThread;
+
+	private Thread exitDrain;
+
+	private OutputStream out;
+	private OutputStream err;
+
+	// entries printed on the logging thread are composed into a buffer of that thread
+	private final SynchronizedObject<LogBuffer> entryBuffers = new SynchronizedObject<>(new Getter<LogBuffer>() {
+		@Override
+		public LogBuffer get() {
+			return new LogBuffer();
+		}
+	});
+
+	// the current batch, owned by the writer thread
+	private final LogBuffer buffer = new LogBuffer(8 * 1024);
+	private OutputStream batchStream;
+	private int batchCount;
+	private long batchDeadline;
+	private long[] batchEnqueued = new long[64];
+
+	private final Runnable writer = new Runnable() {
+		@Override
+		public void run() {
+			while (true) {
+				LogEntry logEntry = ring.poll();
+				if (logEntry == null) {
+					long waitNanos = batchCount == 0 ? Long.MAX_VALUE : batchDeadline - System.nanoTime();
+					if (waitNanos <= 0 || !enable) {
+						flushBatch();
+						waitNanos = Long.MAX_VALUE;
+					}
+
+					if (!enable)
+						break;
+
+					ring.awaitEntries(waitNanos);
+					continue;
+				}
+
+				try {
+					appendEntry(logEntry);
+				} catch (Throwable e) {
+					getMetrics().recordError();
+					System.err.println("JavaLogger '" + config.key + "': Error writing log: " + logEntry);
+					e.printStackTrace();
+				} finally {
+					ring.release(logEntry);
+				}
+
+				if (batchCount >= config.batchSize)
+					flushBatch();
+			}
+
+			// a thread still waiting for room gives up rather than waiting forever
+			ring.close();
+		}
+	};
+
+	@Override
+	protected void init() {
+		if (!config.buffered)
+			return;
+
+		out = new FileOutputStream(FileDescriptor.out);
+		err = new FileOutputStream(FileDescriptor.err);
+		ring = new LogEntryRing(config.queueCapacity);
+		writerThread = new Thread(writer, "Console logger");
+		// does not keep the application alive, the queue is drained on dispose or when the application exits
+		writerThread.setDaemon(true);
+		writerThread.start();
+		exitDrain = ExitDrain.register(writerThread.getName(), new Runnable() {
+			@Override
+			public void run() {
+				if (enable)
+					dispose();
+			}
+		});
+	}
+
+	/**
+	 * Stops accepting entries, and waits for the writer to drain the ones already queued.<br>
+	 * The standard output and error are not closed.
+	 */
+	@Override
+	protected void dispose() {
+		enable = false;
+		if (ring == null)
+			return;
+
+		ExitDrain.unregister(exitDrain);
+		ring.wakeConsumer();
+		if (Thread.currentThread() == writerThread)
+			return;
+
+		try {
+			writerThread.join(DrainTimeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	protected boolean isAsynchronous() {
+		return ring != null;
+	}
+
+	@Override
+	protected int getQueueDepth() {
+		LogEntryRing ring = this.ring;
+		return ring == null ? 0 : ring.size();
+	}
+
 	@Override
 	protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
-		String s = composer.composeEntry(timestamp, level, thread, tag, message, t);
-		switch (level) {
-
-			case Verbose:
-			case Debug:
-			case Info:
-				System.out.print(s);
-				break;
-			case Warning:
-			case Error:
-			case Assert:
-				System.err.print(s);
+		if (ring != null) {
+			enqueue(timestamp, level, thread, tag, message, null, null, t);
+			return;
+		}
+
+		LogBuffer entry = getEntryBuffer();
+		composeEntry(entry, timestamp, level, thread, tag, message, t);
+		print(level, entry);
+	}
+
+	@Override
+	protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, Throwable t) {
+		if (ring != null) {
+			// formatted by the writer thread
+			enqueue(timestamp, level, thread, tag, message, params, null, t);
+			return;
+		}
+
+		super.log(timestamp, level, thread, tag, message, params, t);
+	}
+
+	@Override
+	protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, LogFields fields, Throwable t) {
+		if (ring != null) {
+			enqueue(timestamp, level, thread, tag, message, null, fields, t);
+			return;
+		}
+
+		LogBuffer entry = getEntryBuffer();
+		composeEntry(entry, timestamp, level, thread, tag, message, fields, t);
+		print(level, entry);
+	}
+
+	private LogBuffer getEntryBuffer() {
+		LogBuffer entry = entryBuffers.get();
+		entry.reset();
+		return entry;
+	}
+
+	/**
+	 * Prints the UTF-8 bytes of the entry, the same bytes the buffered mode writes and counts.
+	 */
+	private void print(LogLevel level, LogBuffer entry) {
+		PrintStream stream = level.ordinal() >= LogLevel.Warning.ordinal() ? System.err : System.out;
+		try {
+			entry.writeTo(stream);
+		} catch (IOException e) {
+			getMetrics().recordError();
+			return;
+		}
+		getMetrics().recordWritten(1, entry.size());
+	}
+
+	/**
+	 * Console output is not dropped while the writer is running, when the queue is full the logging thread waits for room.
+	 */
+	private void enqueue(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, LogFields fields, Throwable t) {
+		if (!enable)
+			return;
+
+		if (!ring.put(timestamp, level, thread, tag, message, params, fields, t))
+			getMetrics().recordDropped();
+	}
+
+	private void appendEntry(LogEntry logEntry) {
+		OutputStream stream = logEntry.level.ordinal() >= LogLevel.Warning.ordinal() ? err : out;
+		// entries are written in the order they were queued, so a batch holds entries of a single stream
+		if (stream != batchStream)
+			flushBatch();
+
+		batchStream = stream;
+		if (batchCount == 0)
+			batchDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.flushDelay);
+
+		if (batchCount == batchEnqueued.length)
+			batchEnqueued = Arrays.copyOf(batchEnqueued, batchEnqueued.length * 2);
+
+		String message = formatMessage(logEntry.message, logEntry.params);
+		composeEntry(buffer, logEntry.timestamp, logEntry.level, logEntry.thread, logEntry.tag, message, logEntry.fields, logEntry.t);
+		batchEnqueued[batchCount++] = logEntry.enqueued;
+	}
+
+	/**
+	 * Writes all the entries composed so far with a single write.
+	 */
+	private void flushBatch() {
+		if (batchCount == 0)
+			return;
+
+		try {
+			buffer.writeTo(batchStream);
+
+			long now = System.nanoTime();
+			for (int i = 0; i < batchCount; i++) {
+				getMetrics().recordLatency(now - batchEnqueued[i]);
+			}
+			getMetrics().recordWritten(batchCount, buffer.size());
+		} catch (IOException e) {
+			getMetrics().recordError();
+		} finally {
+			buffer.reset();
+			batchCount = 0;
 		}
 	}
 
@@ -61,6 +288,21 @@ public class JavaLogger
 		public JavaLoggerDescriptor() {
 			super(Config_JavaLogger.KEY, Config_JavaLogger.class, JavaLogger.class);
 		}
+
+		@Override
+		protected void validateConfig(Config_JavaLogger config) {
+			if (!config.buffered)
+				return;
+
+			if (config.queueCapacity < 2)
+				throw new BadImplementationException("Queue capacity MUST be >= 2");
+
+			if (config.batchSize < 1)
+				throw new BadImplementationException("Batch size MUST be >= 1");
+
+			if (config.flushDelay < 0)
+				throw new BadImplementationException("Flush delay MUST be >= 0");
+		}
 	}
 
 	public static class Config_JavaLogger
@@ -68,16 +310,54 @@ public class JavaLogger
 
 		public static final String KEY = JavaLogger.class.getSimpleName();
 
+		boolean buffered;
+		int queueCapacity = 8 * 1024;
+		int batchSize = 256;
+		long flushDelay = 50;
+
 		public Config_JavaLogger() {
 			super(KEY);
 		}
 
+		public Config_JavaLogger setBuffered(boolean buffered) {
+			this.buffered = buffered;
+			return this;
+		}
+
+		/**
+		 * @param queueCapacity In buffered mode, the number of preallocated entries waiting to be written, rounded up to a power of two.
+		 */
+		public Config_JavaLogger setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+			return this;
+		}
+
+		/**
+		 * @param batchSize In buffered mode, the max number of entries written with a single write.
+		 */
+		public Config_JavaLogger setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		/**
+		 * @param flushDelay In buffered mode, the max time in ms a partial batch waits for more entries before it is written.
+		 */
+		public Config_JavaLogger setFlushDelay(long flushDelay) {
+			this.flushDelay = flushDelay;
+			return this;
+		}
+
 		@Override
 		public boolean equals(Object o) {
 			if (this == o)
 				return true;
 
-			return o != null && getClass() == o.getClass();
+			if (o == null || getClass() != o.getClass())
+				return false;
+
+			Config_JavaLogger that = (Config_JavaLogger) o;
+			return buffered == that.buffered && queueCapacity == that.queueCapacity;
 		}
 
 		@Override
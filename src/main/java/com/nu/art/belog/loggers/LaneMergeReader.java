@@ -0,0 +1,609 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.DefaultLogComposer;
+import com.nu.art.belog.LogBuffer;
+import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.belog.loggers.FileLogger.FileFormat;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads the files of a {@link FileLogger} back as a single stream of entries ordered by timestamp, merging its lanes when it is striped.
+ * <p>
+ * Every lane is read from its oldest archive up to its current segment, and the reader always yields the oldest pending entry across
+ * lanes. Entries within a lane keep their written order.
+ * <p>
+ * Text segments are split into entries by the timestamp the {@link DefaultLogComposer} starts every entry with, lines that do not start
+ * with a timestamp, e.g. stack traces, belong to the entry above them.
+ * <p>
+ * Usage as a tool: LaneMergeReader &lt;folder&gt; &lt;fileName&gt; &lt;lanes&gt; [text | binary] renders the merged entries as text to
+ * the standard output.
+ */
+public final class LaneMergeReader {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final Lane[] lanes;
+	private Lane current;
+
+	private LaneMergeReader(Lane[] lanes) {
+		this.lanes = lanes;
+	}
+
+	/**
+	 * @param fileName The file name of the logger, as configured.
+	 * @param lanes    The number of lanes the logger was configured with.
+	 */
+	public static LaneMergeReader open(File folder, String fileName, int lanes, FileFormat format)
+		throws IOException {
+		return open(folder, fileName, lanes, format, null);
+	}
+
+	/**
+	 * Same as {@link #open(File, String, int, FileFormat)}, yielding only the entries that match the query.
+	 * <p>
+	 * Files whose index shows they cannot match are not opened, and only the blocks that may match are read from text segments.
+	 */
+	public static LaneMergeReader open(File folder, String fileName, int lanes, FileFormat format, LogQuery query)
+		throws IOException {
+		Lane[] _lanes = new Lane[lanes];
+		for (int i = 0; i < lanes; i++) {
+			String laneFileName = lanes == 1 ? fileName : FileLogger.getLaneFileName(fileName, i);
+			File[] files = listSegments(folder, laneFileName, format == FileFormat.Binary ? "blog" : "txt");
+			_lanes[i] = format == FileFormat.Binary ? new BinaryLane(i, files, query) : new TextLane(i, files, query);
+		}
+
+		LaneMergeReader reader = new LaneMergeReader(_lanes);
+		for (Lane lane : _lanes) {
+			lane.advance();
+		}
+		return reader;
+	}
+
+	/**
+	 * @return The files of a single lane, oldest first: archives, segments that were moved aside but not archived yet and the current
+	 * segment. Gzip compressed segments are archived by a rename, and are listed along with the archives.
+	 */
+	static File[] listSegments(File folder, String fileName, String segmentSuffix) {
+		final Pattern indexed = Pattern.compile(Pattern.quote(fileName) + "-(\\d+)\\.(zip|" + Pattern.quote(segmentSuffix) + "(?:\\.gz)?)");
+		final String pendingPrefix = fileName + "-pending-";
+		final String pendingSuffix = "." + segmentSuffix;
+		final String compressedPendingSuffix = pendingSuffix + ".gz";
+
+		File[] files = folder.listFiles();
+		if (files == null)
+			return new File[0];
+
+		ArrayList<File> archives = new ArrayList<>();
+		ArrayList<File> pending = new ArrayList<>();
+		ArrayList<File> current = new ArrayList<>();
+		for (File file : files) {
+			String name = file.getName();
+			if (name.startsWith(pendingPrefix) && (name.endsWith(pendingSuffix) || name.endsWith(compressedPendingSuffix))) {
+				pending.add(file);
+				continue;
+			}
+
+			Matcher matcher = indexed.matcher(name);
+			if (!matcher.matches())
+				continue;
+
+			boolean zip = matcher.group(2).equals("zip");
+			int fileIndex = Integer.parseInt(matcher.group(1));
+			// the archive at index 0 exists only while a pending segment is being archived
+			if (zip && fileIndex == 0)
+				continue;
+
+			(fileIndex > 0 ? archives : current).add(file);
+		}
+
+		// indices are zero padded, the higher the index the older the file
+		Collections.sort(archives, Collections.reverseOrder());
+		Collections.sort(pending);
+
+		ArrayList<File> sorted = new ArrayList<>(archives);
+		sorted.addAll(pending);
+		sorted.addAll(current);
+		return sorted.toArray(new File[sorted.size()]);
+	}
+
+	/**
+	 * Moves to the oldest entry not read yet.
+	 *
+	 * @return false when all the lanes were read.
+	 */
+	public boolean next()
+		throws IOException {
+		if (current != null)
+			current.advance();
+
+		current = null;
+		for (Lane lane : lanes) {
+			if (!lane.hasEntry)
+				continue;
+
+			// ties go to the lower lane, so merging is deterministic
+			if (current == null || lane.timestamp < current.timestamp)
+				current = lane;
+		}
+
+		return current != null;
+	}
+
+	public long getTimestamp() {
+		return current.timestamp;
+	}
+
+	/**
+	 * @return The lane the current entry was read from.
+	 */
+	public int getLane() {
+		return current.index;
+	}
+
+	/**
+	 * Appends the current entry as text.
+	 */
+	public void appendTo(LogBuffer buffer) {
+		current.appendTo(buffer);
+	}
+
+	public void close()
+		throws IOException {
+		for (Lane lane : lanes) {
+			lane.close();
+		}
+	}
+
+	/**
+	 * Renders the merged entries as text to the output.
+	 */
+	public static void merge(File folder, String fileName, int lanes, FileFormat format, OutputStream outputStream)
+		throws IOException {
+		LaneMergeReader reader = open(folder, fileName, lanes, format);
+		try {
+			LogBuffer buffer = new LogBuffer();
+			while (reader.next()) {
+				reader.appendTo(buffer);
+				if (buffer.size() < 64 * 1024)
+					continue;
+
+				buffer.writeTo(outputStream);
+				buffer.reset();
+			}
+
+			buffer.writeTo(outputStream);
+			outputStream.flush();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * @return The length of the uncompressed segment, or {@link Long#MAX_VALUE} if it is not known.
+	 */
+	private static long getSegmentLength(File file)
+		throws IOException {
+		if (file.getName().endsWith(".gz"))
+			return Long.MAX_VALUE;
+
+		if (!file.getName().endsWith(".zip"))
+			return file.length();
+
+		ZipFile zipFile = new ZipFile(file);
+		try {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			long size = entries.hasMoreElements() ? entries.nextElement().getSize() : -1;
+			return size < 0 ? Long.MAX_VALUE : size;
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	public static void main(String[] args)
+		throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: LaneMergeReader <folder> <fileName> <lanes> [text | binary]");
+			return;
+		}
+
+		FileFormat format = args.length > 3 && args[3].equalsIgnoreCase("binary") ? FileFormat.Binary : FileFormat.Text;
+		merge(new File(args[0]), args[1], Integer.parseInt(args[2]), format, System.out);
+	}
+
+	/**
+	 * The entries of a single lane, read one segment after the other.
+	 */
+	private static abstract class Lane {
+
+		final int index;
+		private final File[] files;
+		private final LogQuery query;
+		private int nextFile;
+		private InputStream fileStream;
+		private ZipInputStream zipStream;
+
+		boolean hasEntry;
+		long timestamp;
+
+		Lane(int index, File[] files, LogQuery query) {
+			this.index = index;
+			this.files = files;
+			this.query = query;
+		}
+
+		/**
+		 * @return The next segment, or null if there is none, an archive may hold a few.
+		 */
+		final InputStream nextSegment()
+			throws IOException {
+			while (true) {
+				// only the first segment of an archive is indexed
+				if (zipStream != null && zipStream.getNextEntry() != null)
+					return zipStream;
+
+				close();
+				if (nextFile == files.length)
+					return null;
+
+				File file = files[nextFile++];
+				long[] ranges = null;
+				LogIndex index = query == null ? null : LogIndex.read(file);
+				if (index != null) {
+					ranges = index.getRanges(query, getSegmentLength(file));
+					if (ranges.length == 0)
+						continue;
+				}
+
+				InputStream segment = fileStream = new FileInputStream(file);
+				if (file.getName().endsWith(".zip")) {
+					segment = zipStream = new ZipInputStream(fileStream);
+					if (zipStream.getNextEntry() == null)
+						continue;
+				} else if (file.getName().endsWith(".gz")) {
+					try {
+						segment = fileStream = new TruncatedGzipInputStream(fileStream);
+					} catch (EOFException e) {
+						// a segment that was just created, its header is not written yet
+						continue;
+					}
+				}
+
+				return ranges == null || !readsRanges() ? segment : new RangeInputStream(segment, ranges);
+			}
+		}
+
+		final void advance()
+			throws IOException {
+			do {
+				hasEntry = readEntry();
+			} while (hasEntry && query != null && !matches(query));
+		}
+
+		/**
+		 * @return Whether entries can be read from any block of a segment, without reading the blocks before it.
+		 */
+		abstract boolean readsRanges();
+
+		abstract boolean readEntry()
+			throws IOException;
+
+		abstract boolean matches(LogQuery query);
+
+		abstract void appendTo(LogBuffer buffer);
+
+		final void close()
+			throws IOException {
+			zipStream = null;
+			if (fileStream == null)
+				return;
+
+			fileStream.close();
+			fileStream = null;
+		}
+	}
+
+	private static final class BinaryLane
+		extends Lane {
+
+		private final DefaultLogComposer composer = new DefaultLogComposer();
+		private BinaryLogDecoder decoder;
+
+		BinaryLane(int index, File[] files, LogQuery query) {
+			super(index, files, query);
+		}
+
+		@Override
+		boolean readsRanges() {
+			// every entry depends on the dictionaries and timestamps that came before it
+			return false;
+		}
+
+		@Override
+		boolean matches(LogQuery query) {
+			return query.matches(decoder.getTimestamp(), decoder.getLevel(), decoder.getTag());
+		}
+
+		@Override
+		boolean readEntry()
+			throws IOException {
+			while (decoder == null || !decoder.next()) {
+				InputStream segment = nextSegment();
+				if (segment == null)
+					return false;
+
+				decoder = new BinaryLogDecoder(segment);
+			}
+
+			timestamp = decoder.getTimestamp();
+			return true;
+		}
+
+		@Override
+		void appendTo(LogBuffer buffer) {
+			decoder.renderTo(buffer, composer);
+		}
+	}
+
+	private static final class TextLane
+		extends Lane {
+
+		private static final LogLevel[] Levels = LogLevel.values();
+
+		// as rendered by the TimestampRenderer
+		private static final int TimestampLength = "yyyy-MM-dd HH:mm:ss.SSS+0000".length();
+
+		private final SimpleDateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSSZ");
+		private final ParsePosition parsePosition = new ParsePosition(0);
+		private final StringBuilder entry = new StringBuilder();
+		private BufferedReader reader;
+
+		// the first line of the next entry, already read
+		private String nextLine;
+		private long nextTimestamp;
+
+		TextLane(int index, File[] files, LogQuery query) {
+			super(index, files, query);
+		}
+
+		@Override
+		boolean readsRanges() {
+			return true;
+		}
+
+		/**
+		 * The level and tag are taken from the "Level/thread/tag: " header the {@link DefaultLogComposer} writes after the timestamp.
+		 */
+		@Override
+		boolean matches(LogQuery query) {
+			// the header is on the first line of the entry
+			int lineEnd = entry.indexOf("\n");
+			String line = entry.substring(0, lineEnd == -1 ? entry.length() : lineEnd);
+
+			int levelStart = TimestampLength + 1;
+			int levelEnd = line.indexOf('/', levelStart);
+			if (levelEnd == -1)
+				return false;
+
+			LogLevel level = parseLevel(line.substring(levelStart, levelEnd));
+			if (level == null || !query.matches(timestamp, level, query.tag))
+				return false;
+
+			if (query.tag == null)
+				return true;
+
+			// thread names may hold a ": " of their own
+			String tagEnd = "/" + query.tag + ": ";
+			for (int index = line.indexOf(": ", levelEnd); index != -1; index = line.indexOf(": ", index + 1)) {
+				int tagStart = index + 2 - tagEnd.length();
+				if (tagStart > levelEnd && line.startsWith(tagEnd, tagStart))
+					return true;
+			}
+			return false;
+		}
+
+		private static LogLevel parseLevel(String name) {
+			for (LogLevel level : Levels) {
+				if (level.name().equals(name))
+					return level;
+			}
+			return null;
+		}
+
+		@Override
+		boolean readEntry()
+			throws IOException {
+			entry.setLength(0);
+			if (nextLine == null && !readEntryStart())
+				return false;
+
+			timestamp = nextTimestamp;
+			entry.append(nextLine).append('\n');
+			nextLine = null;
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (parseTimestamp(line)) {
+					nextLine = line;
+					break;
+				}
+
+				entry.append(line).append('\n');
+			}
+			return true;
+		}
+
+		/**
+		 * Skips to the first line that starts an entry, a segment starts with one unless it was written by another composer.
+		 */
+		private boolean readEntryStart()
+			throws IOException {
+			while (true) {
+				String line = reader == null ? null : reader.readLine();
+				if (line == null) {
+					InputStream segment = nextSegment();
+					if (segment == null)
+						return false;
+
+					reader = new BufferedReader(new InputStreamReader(segment, UTF8));
+					continue;
+				}
+
+				if (parseTimestamp(line)) {
+					nextLine = line;
+					return true;
+				}
+			}
+		}
+
+		private boolean parseTimestamp(String line) {
+			if (line.length() < TimestampLength || line.charAt(4) != '-' || line.charAt(10) != ' ' || line.charAt(19) != '.')
+				return false;
+
+			parsePosition.setIndex(0);
+			parsePosition.setErrorIndex(-1);
+			Date date = timestampFormat.parse(line.substring(0, TimestampLength), parsePosition);
+			if (date == null)
+				return false;
+
+			nextTimestamp = date.getTime();
+			return true;
+		}
+
+		@Override
+		void appendTo(LogBuffer buffer) {
+			buffer.append(entry.toString());
+		}
+	}
+
+	/**
+	 * A gzip segment that is still being written, or was cut short by a crash, ends without a trailer. Everything up to its last sync
+	 * point is readable, and the missing tail is treated as the end of the segment.
+	 */
+	private static final class TruncatedGzipInputStream
+		extends GZIPInputStream {
+
+		TruncatedGzipInputStream(InputStream inputStream)
+			throws IOException {
+			super(inputStream, 64 * 1024);
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length)
+			throws IOException {
+			try {
+				return super.read(buffer, offset, length);
+			} catch (EOFException e) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Reads only the given ranges of a segment, skipping whatever is in between.
+	 */
+	private static final class RangeInputStream
+		extends InputStream {
+
+		private final InputStream inputStream;
+		private final long[] ranges;
+		private int range;
+		private long position;
+
+		RangeInputStream(InputStream inputStream, long[] ranges) {
+			this.inputStream = inputStream;
+			this.ranges = ranges;
+		}
+
+		/**
+		 * @return The number of bytes left in the current range, after skipping to it if needed, 0 once all the ranges were read.
+		 */
+		private long remaining()
+			throws IOException {
+			while (range < ranges.length && position >= ranges[range + 1]) {
+				range += 2;
+			}
+
+			if (range == ranges.length)
+				return 0;
+
+			while (position < ranges[range]) {
+				long skipped = inputStream.skip(ranges[range] - position);
+				if (skipped <= 0) {
+					// skip may stop short of the end of the stream, read to tell them apart
+					if (inputStream.read() == -1)
+						return 0;
+
+					skipped = 1;
+				}
+				position += skipped;
+			}
+
+			return ranges[range + 1] - position;
+		}
+
+		@Override
+		public int read()
+			throws IOException {
+			if (remaining() == 0)
+				return -1;
+
+			int read = inputStream.read();
+			if (read != -1)
+				position++;
+			return read;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length)
+			throws IOException {
+			long remaining = remaining();
+			if (remaining == 0)
+				return -1;
+
+			int read = inputStream.read(buffer, offset, (int) Math.min(length, remaining));
+			if (read > 0)
+				position += read;
+			return read;
+		}
+	}
+}
@@ -19,6 +19,7 @@
 
 package com.nu.art.belog.loggers;
 
+import com.nu.art.belog.LogFields;
 import com.nu.art.belog.consts.LogLevel;
 
 class LogEntry {
@@ -33,14 +34,25 @@ class LogEntry {
 
 	String message;
 
+	Object[] params;
+
+	LogFields fields;
+
 	Throwable t;
 
-	LogEntry set(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+	long position;
+
+	// System.nanoTime() when the entry was published
+	long enqueued;
+
+	LogEntry set(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, LogFields fields, Throwable t) {
 		this.timestamp = timestamp;
 		this.level = level;
 		this.thread = thread;
 		this.tag = tag;
 		this.message = message;
+		this.params = params;
+		this.fields = fields;
 		this.t = t;
 		return this;
 	}
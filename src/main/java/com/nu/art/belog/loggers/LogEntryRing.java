@@ -0,0 +1,250 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.LogFields;
+import com.nu.art.belog.consts.LogLevel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A preallocated, lock-free, multi-producer/single-consumer ring of {@link LogEntry} slots.
+ * <p>
+ * Every slot carries a sequence number: a producer claims a position by CAS on the claim cursor, fills the slot and publishes it by
+ * advancing the slot sequence, the consumer reads published slots in order and hands them back to the producers once it is done with them.
+ * <p>
+ * The head is taken by CAS on the consume cursor as well, so a producer facing a full ring may {@link #evictOldest() evict} the oldest
+ * entry instead of waiting for the consumer.
+ * <p>
+ * No entry is ever allocated after construction, and producers never block on a monitor.
+ */
+final class LogEntryRing {
+
+	private static final long ConsumerParkInterval = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long ProducerParkInterval = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private final LogEntry[] entries;
+	private final AtomicLongArray sequences;
+	private final int mask;
+
+	private final AtomicLong claimCursor = new AtomicLong();
+
+	private final AtomicLong consumeCursor = new AtomicLong();
+
+	private volatile Thread consumer;
+	private volatile boolean consumerWaiting;
+
+	// set by the consumer on its way out, nothing is taken out of the ring from then on
+	private volatile boolean closed;
+
+	LogEntryRing(int capacity) {
+		capacity = toPowerOfTwo(capacity);
+		mask = capacity - 1;
+		entries = new LogEntry[capacity];
+		sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			entries[i] = new LogEntry();
+			sequences.set(i, i);
+		}
+	}
+
+	private static int toPowerOfTwo(int capacity) {
+		if (capacity < 2)
+			return 2;
+
+		int highestBit = Integer.highestOneBit(capacity);
+		return highestBit == capacity ? capacity : highestBit << 1;
+	}
+
+	int getCapacity() {
+		return entries.length;
+	}
+
+	int size() {
+		long size = claimCursor.get() - consumeCursor.get();
+		return (int) Math.max(0, Math.min(size, entries.length));
+	}
+
+	/**
+	 * Claims a slot, fills it and publishes it to the consumer.
+	 *
+	 * @return false if the ring is full or closed.
+	 */
+	boolean offer(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, LogFields fields, Throwable t) {
+		if (closed)
+			return false;
+
+		LogEntry entry;
+		long position;
+		while (true) {
+			position = claimCursor.get();
+			int index = (int) position & mask;
+			long sequence = sequences.get(index);
+			if (sequence < position)
+				return false;
+
+			if (sequence == position && claimCursor.compareAndSet(position, position + 1)) {
+				entry = entries[index];
+				break;
+			}
+		}
+
+		entry.set(timestamp, level, thread, tag, message, params, fields, t);
+		entry.position = position;
+		entry.enqueued = System.nanoTime();
+		sequences.set((int) position & mask, position + 1);
+
+		if (consumerWaiting)
+			LockSupport.unpark(consumer);
+
+		return true;
+	}
+
+	/**
+	 * Spins, then briefly parks the calling producer, until there is room in the ring.
+	 *
+	 * @return false if the ring was closed, and will never have room again.
+	 */
+	boolean put(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, LogFields fields, Throwable t) {
+		int attempts = 0;
+		while (!offer(timestamp, level, thread, tag, message, params, fields, t)) {
+			if (closed)
+				return false;
+
+			if (++attempts < 100)
+				Thread.yield();
+			else
+				LockSupport.parkNanos(ProducerParkInterval);
+		}
+		return true;
+	}
+
+	/**
+	 * Same as {@link #put}, giving up after the given amount of nanoseconds.
+	 *
+	 * @return false if the ring stayed full for the whole timeout, or was closed.
+	 */
+	boolean offer(long timestamp, LogLevel level, Thread thread, String tag, String message, Object[] params, LogFields fields, Throwable t, long timeoutNanos) {
+		long deadline = System.nanoTime() + timeoutNanos;
+		int attempts = 0;
+		while (!offer(timestamp, level, thread, tag, message, params, fields, t)) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0 || closed)
+				return false;
+
+			if (++attempts < 100)
+				Thread.yield();
+			else
+				LockSupport.parkNanos(Math.min(remaining, ProducerParkInterval));
+		}
+		return true;
+	}
+
+	/**
+	 * Consumer only: returns the next published entry, or null if there is none yet.<br>
+	 * The entry must be handed back with {@link #release(LogEntry)} once the consumer is done with it.
+	 */
+	LogEntry poll() {
+		while (true) {
+			long position = consumeCursor.get();
+			int index = (int) position & mask;
+			if (sequences.get(index) != position + 1)
+				return null;
+
+			if (consumeCursor.compareAndSet(position, position + 1))
+				return entries[index];
+		}
+	}
+
+	/**
+	 * Takes the oldest published entry away from the consumer and frees its slot, only if that is the slot the next claim needs.
+	 *
+	 * @return false if there was no published entry to evict, the consumer got to it first, or the consumer holds on to the slot the next
+	 * claim needs so evicting would make no room.
+	 */
+	boolean evictOldest() {
+		long position = consumeCursor.get();
+		if (claimCursor.get() != position + entries.length)
+			return false;
+
+		int index = (int) position & mask;
+		if (sequences.get(index) != position + 1)
+			return false;
+
+		if (!consumeCursor.compareAndSet(position, position + 1))
+			return false;
+
+		release(entries[index]);
+		return true;
+	}
+
+	/**
+	 * Clears a polled or evicted entry and makes its slot available to the producers again.
+	 */
+	void release(LogEntry entry) {
+		long position = entry.position;
+		entry.set(0, null, null, null, null, null, null, null);
+		sequences.lazySet((int) position & mask, position + entries.length);
+	}
+
+	/**
+	 * Consumer only: parks the consumer until an entry is published, {@link #wakeConsumer()} is called or the park interval elapses.
+	 */
+	void awaitEntries() {
+		awaitEntries(ConsumerParkInterval);
+	}
+
+	/**
+	 * Consumer only: same as {@link #awaitEntries()}, waiting for at most the given amount of nanoseconds.
+	 */
+	void awaitEntries(long timeoutNanos) {
+		consumer = Thread.currentThread();
+		consumerWaiting = true;
+		try {
+			long position = consumeCursor.get();
+			if (sequences.get((int) position & mask) == position + 1)
+				return;
+
+			LockSupport.parkNanos(this, Math.min(timeoutNanos, ConsumerParkInterval));
+		} finally {
+			consumerWaiting = false;
+		}
+	}
+
+	/**
+	 * Consumer only: called when the consumer stops for good, producers waiting for room give up and every offer fails from then on.
+	 */
+	void close() {
+		closed = true;
+	}
+
+	boolean isClosed() {
+		return closed;
+	}
+
+	void wakeConsumer() {
+		Thread consumer = this.consumer;
+		if (consumer != null)
+			LockSupport.unpark(consumer);
+	}
+}
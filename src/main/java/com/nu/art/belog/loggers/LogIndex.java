@@ -0,0 +1,198 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The sidecar index of a log segment, written by the {@link LogIndexWriter} next to the segment as "&lt;segment&gt;.idx" and moved along
+ * with it when it is rotated and archived.
+ * <p>
+ * The index is a sequence of fixed size block records, each summarizes a run of whole entries of about {@link LogIndexWriter#BlockSize}
+ * bytes:
+ * <ul>
+ * <li>offset (long) and length (int) of the block in the uncompressed segment</li>
+ * <li>a mask of the levels (int) of its entries</li>
+ * <li>the min and max timestamps (long) of its entries</li>
+ * <li>a bloom filter (4 longs) of the tags of its entries</li>
+ * </ul>
+ * Parts of a segment no block covers, e.g. the block being written or whatever was written before a crash, are unknown and always read.
+ */
+final class LogIndex {
+
+	static final String Suffix = ".idx";
+
+	static final int RecordSize = 8 + 4 + 4 + 8 + 8 + 4 * 8;
+
+	static final int BloomWords = 4;
+
+	private static final int BloomHashes = 3;
+
+	static final class Block {
+
+		long offset;
+		int length;
+		int levels;
+		long minTimestamp;
+		long maxTimestamp;
+		final long[] bloom = new long[BloomWords];
+
+		boolean mayMatch(LogQuery query) {
+			if (maxTimestamp < query.from || minTimestamp > query.to)
+				return false;
+
+			if ((levels & query.getLevelMask()) == 0)
+				return false;
+
+			return query.tag == null || mayContain(bloom, query.tag);
+		}
+	}
+
+	private final Block[] blocks;
+
+	private LogIndex(Block[] blocks) {
+		this.blocks = blocks;
+	}
+
+	static File getIndexFile(File segment) {
+		return new File(segment.getPath() + Suffix);
+	}
+
+	/**
+	 * @return The index of the given segment, or null if it has none.
+	 */
+	static LogIndex read(File segment)
+		throws IOException {
+		File indexFile = getIndexFile(segment);
+		if (!indexFile.exists())
+			return null;
+
+		ArrayList<Block> blocks = new ArrayList<>();
+		DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		try {
+			// a record cut short, e.g. by a crash, is ignored
+			for (long count = indexFile.length() / RecordSize; count > 0; count--) {
+				Block block = new Block();
+				block.offset = inputStream.readLong();
+				block.length = inputStream.readInt();
+				block.levels = inputStream.readInt();
+				block.minTimestamp = inputStream.readLong();
+				block.maxTimestamp = inputStream.readLong();
+				for (int i = 0; i < BloomWords; i++) {
+					block.bloom[i] = inputStream.readLong();
+				}
+				blocks.add(block);
+			}
+		} catch (EOFException ignore) {
+		} finally {
+			inputStream.close();
+		}
+
+		Block[] sorted = blocks.toArray(new Block[blocks.size()]);
+		Arrays.sort(sorted, new Comparator<Block>() {
+			@Override
+			public int compare(Block block1, Block block2) {
+				return Long.compare(block1.offset, block2.offset);
+			}
+		});
+		return new LogIndex(sorted);
+	}
+
+	/**
+	 * @param length The length of the uncompressed segment, or {@link Long#MAX_VALUE} if it is not known.
+	 * @return Pairs of start and end offsets of the parts of the segment that may hold matching entries, in order, empty if nothing in
+	 * the segment can match.
+	 */
+	long[] getRanges(LogQuery query, long length) {
+		long[] ranges = new long[8];
+		int count = 0;
+		long covered = 0;
+		for (Block block : blocks) {
+			long start = Math.max(covered, block.offset);
+			long end = Math.min(length, block.offset + block.length);
+			if (block.offset > covered)
+				count = addRange(ranges = ensureRoom(ranges, count), count, covered, Math.min(block.offset, length));
+
+			if (start < end && block.mayMatch(query))
+				count = addRange(ranges = ensureRoom(ranges, count), count, start, end);
+
+			covered = Math.max(covered, block.offset + block.length);
+		}
+
+		if (covered < length)
+			count = addRange(ranges = ensureRoom(ranges, count), count, covered, length);
+
+		return Arrays.copyOf(ranges, count);
+	}
+
+	private static long[] ensureRoom(long[] ranges, int count) {
+		return count + 2 <= ranges.length ? ranges : Arrays.copyOf(ranges, ranges.length * 2);
+	}
+
+	private static int addRange(long[] ranges, int count, long start, long end) {
+		if (start >= end)
+			return count;
+
+		// adjacent ranges are read as one
+		if (count > 0 && ranges[count - 1] == start) {
+			ranges[count - 1] = end;
+			return count;
+		}
+
+		ranges[count++] = start;
+		ranges[count++] = end;
+		return count;
+	}
+
+	static void addToBloom(long[] bloom, String tag) {
+		int hash = hash(tag);
+		int step = (hash >>> 16) | 1;
+		for (int i = 0; i < BloomHashes; i++) {
+			int bit = (hash + i * step) & (BloomWords * 64 - 1);
+			bloom[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	static boolean mayContain(long[] bloom, String tag) {
+		int hash = hash(tag);
+		int step = (hash >>> 16) | 1;
+		for (int i = 0; i < BloomHashes; i++) {
+			int bit = (hash + i * step) & (BloomWords * 64 - 1);
+			if ((bloom[bit >>> 6] & 1L << bit) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	private static int hash(String tag) {
+		int hash = tag == null ? 0 : tag.hashCode();
+		// spread the bits, tags often differ only by their last characters
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 15);
+	}
+}
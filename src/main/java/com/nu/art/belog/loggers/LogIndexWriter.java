@@ -0,0 +1,125 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.consts.LogLevel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes the {@link LogIndex} of a segment as its entries are written, owned by the writer thread of the {@link FileLogger}.
+ * <p>
+ * Block records are buffered as blocks close, and appended to the index file only once the segment bytes they describe were written.
+ */
+final class LogIndexWriter {
+
+	static final int BlockSize = 32 * 1024;
+
+	private final FileOutputStream outputStream;
+	private final ByteArrayOutputStream records = new ByteArrayOutputStream(LogIndex.RecordSize * 4);
+	private final DataOutputStream recordsOutput = new DataOutputStream(records);
+
+	// the open block, its offset is -1 when there is none
+	private long offset = -1;
+	private int levels;
+	private long minTimestamp;
+	private long maxTimestamp;
+	private final long[] bloom = new long[LogIndex.BloomWords];
+
+	/**
+	 * @param append Whether the segment already holds entries, in which case their blocks are kept.
+	 */
+	LogIndexWriter(File segment, boolean append)
+		throws IOException {
+		outputStream = new FileOutputStream(LogIndex.getIndexFile(segment), append);
+	}
+
+	/**
+	 * @param offset The offset of the entry in the segment.
+	 */
+	void onEntry(long offset, long timestamp, LogLevel level, String tag) {
+		if (this.offset != -1 && offset - this.offset >= BlockSize)
+			closeBlock(offset);
+
+		if (this.offset == -1) {
+			this.offset = offset;
+			levels = 0;
+			minTimestamp = timestamp;
+			maxTimestamp = timestamp;
+			Arrays.fill(bloom, 0);
+		}
+
+		levels |= 1 << level.ordinal();
+		minTimestamp = Math.min(minTimestamp, timestamp);
+		maxTimestamp = Math.max(maxTimestamp, timestamp);
+		LogIndex.addToBloom(bloom, tag);
+	}
+
+	private void closeBlock(long end) {
+		try {
+			recordsOutput.writeLong(offset);
+			recordsOutput.writeInt((int) (end - offset));
+			recordsOutput.writeInt(levels);
+			recordsOutput.writeLong(minTimestamp);
+			recordsOutput.writeLong(maxTimestamp);
+			for (long word : bloom) {
+				recordsOutput.writeLong(word);
+			}
+		} catch (IOException e) {
+			// cannot happen, written to memory
+			throw new IllegalStateException(e);
+		}
+		offset = -1;
+	}
+
+	/**
+	 * Appends the records of the blocks closed so far, call once the segment bytes up to the current entry were written.
+	 */
+	void flush()
+		throws IOException {
+		if (records.size() == 0)
+			return;
+
+		records.writeTo(outputStream);
+		records.reset();
+	}
+
+	/**
+	 * Closes the open block, which ends with the segment, and the index file.
+	 *
+	 * @param end The length of the segment.
+	 */
+	void close(long end)
+		throws IOException {
+		if (offset != -1 && end > offset)
+			closeBlock(end);
+
+		try {
+			flush();
+		} finally {
+			outputStream.close();
+		}
+	}
+}
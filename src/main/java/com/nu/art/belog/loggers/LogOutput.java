@@ -0,0 +1,327 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.LogBuffer;
+import com.nu.art.belog.loggers.FileLogger.Compression;
+import com.nu.art.belog.loggers.FileLogger.OutputMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The engine that puts the composed bytes of the current log segment on disk.
+ */
+abstract class LogOutput {
+
+	static LogOutput create(OutputMode mode, Compression compression, long segmentSize) {
+		// compressed bytes are streamed, whatever the output mode
+		if (compression == Compression.Gzip)
+			return new GzipLogOutput();
+
+		switch (mode) {
+			case Channel:
+				return new ChannelLogOutput();
+
+			case Mapped:
+				return new MappedLogOutput(segmentSize);
+
+			default:
+				return new StreamLogOutput();
+		}
+	}
+
+	/**
+	 * Opens the file for appending.
+	 *
+	 * @return The number of bytes already in the file.
+	 */
+	abstract long open(File file)
+		throws IOException;
+
+	abstract void write(LogBuffer buffer)
+		throws IOException;
+
+	void flush()
+		throws IOException {}
+
+	/**
+	 * Called by the writer whenever it runs out of entries to write, outputs that hold back bytes should put them on disk.
+	 */
+	void idle()
+		throws IOException {}
+
+	abstract void close()
+		throws IOException;
+
+	private static class StreamLogOutput
+		extends LogOutput {
+
+		private FileOutputStream outputStream;
+
+		@Override
+		long open(File file)
+			throws IOException {
+			outputStream = new FileOutputStream(file, true);
+			return file.length();
+		}
+
+		@Override
+		void write(LogBuffer buffer)
+			throws IOException {
+			buffer.writeTo(outputStream);
+		}
+
+		@Override
+		void flush()
+			throws IOException {
+			outputStream.flush();
+		}
+
+		@Override
+		void close()
+			throws IOException {
+			outputStream.close();
+		}
+	}
+
+	/**
+	 * Compresses the segment as it is written.<br>
+	 * The deflater is sync flushed at most once per sync interval while entries keep coming, and whenever the writer runs out of
+	 * entries, everything up to the last sync point can be read back even if the file is never finished, e.g. after a crash.
+	 */
+	private static class GzipLogOutput
+		extends LogOutput {
+
+		private static final long SyncInterval = TimeUnit.SECONDS.toNanos(1);
+
+		private GZIPOutputStream outputStream;
+		private boolean unsynced;
+		private long lastSync;
+
+		@Override
+		long open(File file)
+			throws IOException {
+			// a member cut short by a crash cannot be followed by another, so a compressed segment is never appended to
+			outputStream = new GZIPOutputStream(new FileOutputStream(file), 64 * 1024, true) {
+				{
+					// logs compress well enough at the fastest level, and the writer thread is what limits the throughput
+					def.setLevel(Deflater.BEST_SPEED);
+				}
+			};
+			lastSync = System.nanoTime();
+			return 0;
+		}
+
+		@Override
+		void write(LogBuffer buffer)
+			throws IOException {
+			buffer.writeTo(outputStream);
+			unsynced = true;
+		}
+
+		@Override
+		void flush()
+			throws IOException {
+			if (System.nanoTime() - lastSync >= SyncInterval)
+				idle();
+		}
+
+		@Override
+		void idle()
+			throws IOException {
+			if (!unsynced)
+				return;
+
+			outputStream.flush();
+			unsynced = false;
+			lastSync = System.nanoTime();
+		}
+
+		@Override
+		void close()
+			throws IOException {
+			outputStream.finish();
+			outputStream.close();
+		}
+	}
+
+	private static class ChannelLogOutput
+		extends LogOutput {
+
+		private static final int DirectBufferSize = 64 * 1024;
+
+		private final ByteBuffer directBuffer = ByteBuffer.allocateDirect(DirectBufferSize);
+		private FileChannel channel;
+
+		@Override
+		long open(File file)
+			throws IOException {
+			channel = new FileOutputStream(file, true).getChannel();
+			return channel.size();
+		}
+
+		@Override
+		void write(LogBuffer buffer)
+			throws IOException {
+			int offset = 0;
+			while (offset < buffer.size()) {
+				directBuffer.clear();
+				offset += buffer.writeTo(directBuffer, offset);
+				directBuffer.flip();
+				while (directBuffer.hasRemaining()) {
+					channel.write(directBuffer);
+				}
+			}
+		}
+
+		@Override
+		void close()
+			throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Maps the segment up to its expected size and appends by position, the file is truncated to the real length on close.<br>
+	 * A segment left padded with zeros by a crash is trimmed when it is opened again.
+	 */
+	private static class MappedLogOutput
+		extends LogOutput {
+
+		private static final int MinMappingSize = 64 * 1024;
+
+		private final long segmentSize;
+
+		private RandomAccessFile file;
+		private FileChannel channel;
+		private MappedByteBuffer mapped;
+		private long mappedStart;
+
+		MappedLogOutput(long segmentSize) {
+			this.segmentSize = segmentSize;
+		}
+
+		@Override
+		long open(File file)
+			throws IOException {
+			this.file = new RandomAccessFile(file, "rw");
+			channel = this.file.getChannel();
+
+			long position = findContentEnd();
+			channel.truncate(position);
+			map(position, segmentSize - position);
+			return position;
+		}
+
+		private long findContentEnd()
+			throws IOException {
+			ByteBuffer chunk = ByteBuffer.allocate(4 * 1024);
+			long end = channel.size();
+			while (end > 0) {
+				long start = Math.max(0, end - chunk.capacity());
+				chunk.clear();
+				chunk.limit((int) (end - start));
+				// a read may return less than asked for
+				while (chunk.hasRemaining()) {
+					if (channel.read(chunk, start + chunk.position()) < 0)
+						break;
+				}
+
+				for (int i = chunk.position() - 1; i >= 0; i--) {
+					if (chunk.get(i) != 0)
+						return start + i + 1;
+				}
+				end = start;
+			}
+			return 0;
+		}
+
+		private void map(long position, long length)
+			throws IOException {
+			if (mapped != null)
+				release();
+
+			mappedStart = position;
+			mapped = channel.map(MapMode.READ_WRITE, position, Math.max(length, MinMappingSize));
+		}
+
+		/**
+		 * Puts the mapped bytes on disk and unmaps the buffer, the buffer MUST NOT be touched afterwards.
+		 */
+		private void release() {
+			mapped.force();
+			unmap(mapped);
+			mapped = null;
+		}
+
+		@Override
+		void write(LogBuffer buffer)
+			throws IOException {
+			if (mapped.remaining() < buffer.size())
+				map(mappedStart + mapped.position(), buffer.size());
+
+			buffer.writeTo(mapped, 0);
+		}
+
+		@Override
+		void close()
+			throws IOException {
+			long length = mappedStart + mapped.position();
+			// the mapping goes first, some platforms refuse to truncate a file that is still mapped
+			release();
+			channel.truncate(length);
+			file.close();
+		}
+
+		/**
+		 * Java has no public API to unmap a buffer before it is collected: Java 9+ exposes it through sun.misc.Unsafe#invokeCleaner, older
+		 * JVMs through the cleaner of the buffer. Where neither is available the mapping lives on until the buffer is collected, which
+		 * truncating the file is fine with on POSIX systems, but not on Windows.
+		 */
+		private static void unmap(MappedByteBuffer buffer) {
+			try {
+				Class<?> unsafeType = Class.forName("sun.misc.Unsafe");
+				Field theUnsafe = unsafeType.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				unsafeType.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+				return;
+			} catch (Exception ignore) {}
+
+			try {
+				Method getCleaner = buffer.getClass().getMethod("cleaner");
+				getCleaner.setAccessible(true);
+				Object cleaner = getCleaner.invoke(buffer);
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			} catch (Exception ignore) {}
+		}
+	}
+}
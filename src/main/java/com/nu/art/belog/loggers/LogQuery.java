@@ -0,0 +1,68 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.consts.LogLevel;
+
+/**
+ * Selects the entries of a time range, at or above a level and optionally of a single tag, when reading logs back with the
+ * {@link LaneMergeReader}.
+ */
+public final class LogQuery {
+
+	long from = Long.MIN_VALUE;
+	long to = Long.MAX_VALUE;
+	LogLevel minLevel = LogLevel.Verbose;
+	String tag;
+
+	/**
+	 * @param from The earliest timestamp in ms, inclusive.
+	 * @param to   The latest timestamp in ms, inclusive.
+	 */
+	public LogQuery setTimeRange(long from, long to) {
+		this.from = from;
+		this.to = to;
+		return this;
+	}
+
+	public LogQuery setMinLevel(LogLevel minLevel) {
+		this.minLevel = minLevel;
+		return this;
+	}
+
+	public LogQuery setTag(String tag) {
+		this.tag = tag;
+		return this;
+	}
+
+	final int getLevelMask() {
+		return -1 << minLevel.ordinal();
+	}
+
+	final boolean matches(long timestamp, LogLevel level, String tag) {
+		if (timestamp < from || timestamp > to)
+			return false;
+
+		if (level.ordinal() < minLevel.ordinal())
+			return false;
+
+		return this.tag == null || this.tag.equals(tag);
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.loggers.JavaLogger;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestBeConfigWatcher {
+
+	private static final String Config = "{\"rules\": [{\"loggerKeys\": [\"%1$s\"]}], \"configs\": [{\"type\": \"JavaLogger\", \"key\": \"%1$s\"}]}";
+
+	@Test
+	public void testReloadOnChange()
+		throws IOException, InterruptedException {
+		File folder = File.createTempFile("watched", "");
+		folder.delete();
+		folder.mkdirs();
+		File configFile = new File(folder, "belog.json");
+		write(configFile, String.format(Config, "watched-1"));
+
+		BeConfigWatcher watcher = new BeConfigWatcher(configFile);
+		try {
+			watcher.start();
+			assertNotNull("applied when started", BeLogged.getInstance().getClient("watched-1"));
+
+			// a config that cannot be parsed is ignored
+			write(configFile, "{\"rules\": [");
+			write(configFile, String.format(Config, "watched-2"));
+			long deadline = System.currentTimeMillis() + 10000;
+			while (BeLogged.getInstance().getClient("watched-2") == null && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertNotNull("applied when changed", BeLogged.getInstance().getClient("watched-2"));
+		} finally {
+			watcher.stop();
+			BeLogged.getInstance().setConfig(JavaLogger.Config_FastJavaLogger);
+		}
+		assertTrue(configFile.delete());
+	}
+
+	private static void write(File file, String content)
+		throws IOException {
+		Files.write(file.toPath(), content.getBytes(Charset.forName("UTF-8")));
+	}
+}
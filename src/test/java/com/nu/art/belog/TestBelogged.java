@@ -1,13 +1,58 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
 package com.nu.art.belog;
 
+import com.nu.art.belog.BeConfig.LoggerConfig;
+import com.nu.art.belog.BeConfig.Rule;
 import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.belog.loggers.FileLogger.Config_FileLogger;
+import com.nu.art.belog.loggers.FileLogger.FileFormat;
+import com.nu.art.belog.loggers.FileLogger.OutputMode;
+import com.nu.art.belog.loggers.FileLogger.OverflowPolicy;
+import com.nu.art.belog.loggers.FileLogger.RotationInterval;
 import com.nu.art.belog.loggers.JavaLogger;
+import com.nu.art.belog.loggers.JavaLogger.Config_JavaLogger;
 import com.nu.art.core.exceptions.runtime.NotImplementedYetException;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static com.nu.art.belog.loggers.JavaLogger.Config_FastJavaLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by TacB0sS on 23/04/2018.
@@ -57,6 +102,277 @@ public class TestBelogged
 		log(LogLevel.Warning, "testing log with %F in it");
 	}
 
+	@Test
+	public void testIsLoggable() {
+		BeLogged.getInstance().setMinLogLevel(LogLevel.Info);
+		BeLogged.getInstance().setMaxLogLevel(LogLevel.Error);
+		assertFalse(isLoggable(LogLevel.Debug));
+		assertTrue(isLoggable(LogLevel.Info));
+		assertTrue(isLoggable(LogLevel.Error));
+		assertFalse(isLoggable(LogLevel.Assert));
+
+		BeLogged.getInstance().setConfig(new BeConfig().setRules(JavaLogger.Rule_AllToJavaLogger));
+		assertFalse("no client to route to", isLoggable(LogLevel.Info));
+
+		BeLogged.getInstance().setMinLogLevel(LogLevel.Verbose);
+		BeLogged.getInstance().setMaxLogLevel(LogLevel.Assert);
+		BeLogged.getInstance().setConfig(Config_FastJavaLogger);
+		assertTrue(isLoggable(LogLevel.Verbose));
+	}
+
+	@Test
+	public void testTagContextsCreatedDuringConfigChanges()
+		throws InterruptedException {
+		BeLogged.getInstance().setMinLogLevel(LogLevel.Verbose);
+		BeLogged.getInstance().setMaxLogLevel(LogLevel.Assert);
+		final BeConfig errorsOnly = new BeConfig().setRules(new Rule().setLoggerKeys(Config_JavaLogger.KEY).setMinLevel(LogLevel.Error))
+		                                          .setLoggersConfig(JavaLogger.LogConfig_JavaLogger);
+		Thread swappingThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < 50; i++) {
+					BeLogged.getInstance().setConfig(errorsOnly);
+					BeLogged.getInstance().setConfig(Config_FastJavaLogger);
+				}
+			}
+		});
+		swappingThread.start();
+
+		int count = 0;
+		while (swappingThread.isAlive() && count < 2000) {
+			BeLogged.getInstance().getTagContext("concurrent-tag-" + count++);
+			Thread.yield();
+		}
+		swappingThread.join();
+
+		// whatever config a context was created under, it follows the one in effect
+		for (int i = 0; i < count; i++) {
+			assertTrue("concurrent-tag-" + i, BeLogged.getInstance().getTagContext("concurrent-tag-" + i).isLoggable(LogLevel.Debug));
+		}
+	}
+
+	@Test
+	public void testReloadFileFormat()
+		throws IOException {
+		File folder = File.createTempFile("reload", "");
+		folder.delete();
+		folder.mkdirs();
+
+		Config_FileLogger textConfig = (Config_FileLogger) new Config_FileLogger().setFolder(folder.getAbsolutePath()).setFileName("app").setKey("file");
+		BeLogged.getInstance().setConfig(new BeConfig().setRules(new Rule().setLoggerKeys("file")).setLoggersConfig(textConfig));
+		LoggerClient textClient = BeLogged.getInstance().getClient("file");
+
+		Config_FileLogger binaryConfig = textConfig.clone().setFormat(FileFormat.Binary);
+		binaryConfig.setKey("file");
+		BeLogged.getInstance().setConfig(new BeConfig().setRules(new Rule().setLoggerKeys("file")).setLoggersConfig(binaryConfig));
+		LoggerClient binaryClient = BeLogged.getInstance().getClient("file");
+		assertNotSame("a different format needs a new client", textClient, binaryClient);
+
+		log(LogLevel.Info, "binary entry");
+		BeLogged.getInstance().setConfig(Config_FastJavaLogger);
+		assertTrue(new File(folder, "app-00.blog").length() > 0);
+	}
+
+	@Test
+	public void testReloadFileLayout()
+		throws IOException {
+		File folder = File.createTempFile("reload-layout", "");
+		folder.delete();
+		folder.mkdirs();
+
+		Config_FileLogger config = (Config_FileLogger) new Config_FileLogger().setFolder(folder.getAbsolutePath())
+		                                                                      .setFileName("app")
+		                                                                      .setCount(5)
+		                                                                      .setSize(10 * 1024)
+		                                                                      .setKey("file");
+		BeLogged.getInstance().setConfig(new BeConfig().setRules(new Rule().setLoggerKeys("file")).setLoggersConfig(config));
+		LoggerClient client = BeLogged.getInstance().getClient("file");
+
+		Config_FileLogger flushConfig = config.clone().setFlushDelay(10);
+		flushConfig.setKey("file");
+		BeLogged.getInstance().setConfig(new BeConfig().setRules(new Rule().setLoggerKeys("file")).setLoggersConfig(flushConfig));
+		assertSame("the flush delay is applied to the running client", client, BeLogged.getInstance().getClient("file"));
+
+		Config_FileLogger countConfig = config.clone().setCount(20);
+		countConfig.setKey("file");
+		BeLogged.getInstance().setConfig(new BeConfig().setRules(new Rule().setLoggerKeys("file")).setLoggersConfig(countConfig));
+		LoggerClient countClient = BeLogged.getInstance().getClient("file");
+		assertNotSame("the retention is laid out by the count", client, countClient);
+		assertFalse("renamed to the padding of the new count", new File(folder, "app-0.txt").exists());
+
+		Config_FileLogger[] changes = {
+			config.clone().setCount(20).setSize(20 * 1024),
+			config.clone().setCount(20).setMaxTotalSize(100 * 1024 * 1024),
+			config.clone().setCount(20).setRotationInterval(RotationInterval.Hourly),
+			config.clone().setCount(20).setQueueCapacity(16),
+			config.clone().setCount(20).setBatchSize(8),
+			config.clone().setCount(20).setOutput(OutputMode.Channel),
+			config.clone().setCount(20).setOverflowPolicy(OverflowPolicy.DropNewest),
+		};
+		for (Config_FileLogger change : changes) {
+			change.setKey("file");
+			assertFalse(countConfig.equals(change));
+		}
+
+		// rotations past the previous count
+		StringBuilder padding = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			padding.append("0123456789");
+		}
+		for (int i = 0; i < 200; i++) {
+			log(LogLevel.Info, "entry " + i + " " + padding);
+		}
+		BeLogged.getInstance().setConfig(Config_FastJavaLogger);
+		assertEquals(0, countClient.getMetrics().getErrorCount());
+	}
+
+	public static class Config_BlockingLogger
+		extends LoggerConfig {
+
+		public Config_BlockingLogger() {
+			super("BlockingLogger");
+		}
+	}
+
+	public static class BlockingLogger
+		extends LoggerClient<Config_BlockingLogger> {
+
+		static CountDownLatch entered;
+		static CountDownLatch gate;
+		volatile boolean disposed;
+
+		@Override
+		protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+			entered.countDown();
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		protected void dispose() {
+			disposed = true;
+		}
+	}
+
+	@Test
+	public void testSwapWaitsOutsideOfTheLock()
+		throws InterruptedException {
+		BlockingLogger.entered = new CountDownLatch(1);
+		BlockingLogger.gate = new CountDownLatch(1);
+		BeLogged.getInstance().registerDescriptor(new LoggerDescriptor<>("BlockingLogger", Config_BlockingLogger.class, BlockingLogger.class));
+		BeLogged.getInstance().setConfig(new BeConfig().setRules(new Rule().setLoggerKeys("blocking"))
+		                                               .setLoggersConfig(new Config_BlockingLogger().setKey("blocking")));
+		BlockingLogger blockingLogger = (BlockingLogger) BeLogged.getInstance().getClient("blocking");
+
+		Thread loggingThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				BeLogged.getInstance().log(LogLevel.Info, "swap", "stuck in a slow client", null, null);
+			}
+		});
+		loggingThread.start();
+		BlockingLogger.entered.await();
+
+		Thread swappingThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				BeLogged.getInstance().setConfig(Config_FastJavaLogger);
+			}
+		});
+		swappingThread.start();
+		while (BeLogged.getInstance().getClient("blocking") != null) {
+			Thread.sleep(1);
+		}
+
+		// the new config is in effect while the removed client is still in use
+		long started = System.nanoTime();
+		BeLogged.getInstance().setConfig(new BeConfig().setRules(JavaLogger.Rule_AllToJavaLogger).setLoggersConfig(JavaLogger.LogConfig_JavaLogger));
+		assertTrue("another config change is not held back", System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1));
+		assertFalse(blockingLogger.disposed);
+
+		BlockingLogger.gate.countDown();
+		swappingThread.join();
+		loggingThread.join();
+		assertTrue(blockingLogger.disposed);
+		BeLogged.getInstance().setConfig(Config_FastJavaLogger);
+	}
+
+	public static class Config_RecordingLogger
+		extends LoggerConfig {
+
+		public Config_RecordingLogger() {
+			super("RecordingLogger");
+		}
+	}
+
+	public static class RecordingLogger
+		extends LoggerClient<Config_RecordingLogger> {
+
+		final List<String> messages = new CopyOnWriteArrayList<>();
+
+		@Override
+		protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+			messages.add(tag + ": " + message);
+		}
+	}
+
+	@Test
+	public void testSuppressedReportedOnConfigChange() {
+		BeLogged.getInstance().setMinLogLevel(LogLevel.Verbose);
+		BeLogged.getInstance().setMaxLogLevel(LogLevel.Assert);
+		BeLogged.getInstance().registerDescriptor(new LoggerDescriptor<>("RecordingLogger", Config_RecordingLogger.class, RecordingLogger.class));
+		BeLogged.getInstance().setConfig(new BeConfig().setRules(new Rule().setLoggerKeys("recording").setMaxPerSecond(1))
+		                                               .setLoggersConfig(new Config_RecordingLogger().setKey("recording")));
+		RecordingLogger recordingLogger = (RecordingLogger) BeLogged.getInstance().getClient("recording");
+
+		// the burst stops, no entry is let through to carry its summary
+		for (int i = 0; i < 5; i++) {
+			BeLogged.getInstance().log(LogLevel.Info, "burst", "entry " + i, null, null);
+		}
+		assertEquals(Arrays.asList("burst: entry 0"), recordingLogger.messages);
+
+		BeLogged.getInstance().setConfig(Config_FastJavaLogger);
+		assertEquals(Arrays.asList("burst: entry 0", "burst: 4 entries suppressed by rule limits (max 1/s, tag: burst)"), recordingLogger.messages);
+	}
+
+	@Test
+	public void testGetAsyncClient() {
+		LoggerConfig asyncConfig = new Config_JavaLogger().setKey(Config_JavaLogger.KEY).setAsync(true);
+		BeLogged.getInstance().setConfig(new BeConfig().setRules(JavaLogger.Rule_AllToJavaLogger).setLoggersConfig(asyncConfig));
+		assertTrue("the configured client, not its async queue", BeLogged.getInstance().getClient(Config_JavaLogger.KEY) instanceof JavaLogger);
+		BeLogged.getInstance().setConfig(Config_FastJavaLogger);
+	}
+
+	@Test
+	public void testSnapshotIntegerConversion() {
+		AtomicInteger counter = new AtomicInteger(41);
+		Object[] snapshot = BeLogged.snapshotParams(new Object[]{counter, new BigInteger("12345678901234567890")});
+		counter.incrementAndGet();
+		assertEquals("41 12345678901234567890", String.format("%d %d", snapshot));
+	}
+
+	@Test
+	public void testSnapshotDecimalConversion() {
+		Object[] snapshot = BeLogged.snapshotParams(new Object[]{new BigDecimal("3.14159"), 2.5f});
+		assertEquals("3.14 2.50", String.format("%.2f %.2f", snapshot));
+	}
+
+	@Test
+	public void testSnapshotDateConversion() {
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(2018, Calendar.APRIL, 23);
+		Date date = calendar.getTime();
+
+		Object[] snapshot = BeLogged.snapshotParams(new Object[]{date, calendar});
+		date.setTime(0);
+		calendar.set(Calendar.YEAR, 1999);
+		assertEquals("2018 2018-04-23", String.format("%tY %tF", snapshot));
+	}
+
 	@Test
 	public void logBenchmark() {
 		benchmarkStringConcat(10, "param1", 2, "param3", 0.84f);
@@ -0,0 +1,90 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.consts.LogLevel;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestDefaultLogComposer {
+
+	@Test
+	public void testTimestampRendering() {
+		TimeZone timeZone = TimeZone.getTimeZone("Asia/Jerusalem");
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSSZ");
+		format.setTimeZone(timeZone);
+
+		TimestampRenderer renderer = new TimestampRenderer(timeZone);
+		LogBuffer buffer = new LogBuffer();
+
+		// crossing seconds back and forth, and a daylight saving switch
+		long[] timestamps = {
+			1524470400000L,
+			1524470400999L,
+			1524470401001L,
+			1524470400500L,
+			1540504799999L,
+			1540504800000L,
+			7L
+		};
+
+		for (long timestamp : timestamps) {
+			buffer.reset();
+			renderer.render(buffer, timestamp);
+			assertEquals(format.format(new Date(timestamp)), buffer.toString());
+		}
+	}
+
+	@Test
+	public void testComposeEntry() {
+		DefaultLogComposer composer = new DefaultLogComposer(new TimestampRenderer(TimeZone.getTimeZone("UTC")));
+		Thread thread = new Thread("writer-\u05D0");
+
+		String entry = composer.composeEntry(1524470400123L, LogLevel.Warning, thread, "Tag", "message \uD83D\uDE00", null);
+		assertEquals("2018-04-23 08:00:00.123+0000 Warning/writer-\u05D0/Tag: message \uD83D\uDE00\n", entry);
+
+		LogBuffer buffer = new LogBuffer(16);
+		composer.composeEntry(buffer, 1524470400123L, LogLevel.Warning, thread, "Tag", "message \uD83D\uDE00", null);
+		assertEquals(entry.getBytes(Charset.forName("UTF-8")).length, buffer.size());
+		assertEquals(entry, buffer.toString());
+	}
+
+	@Test
+	public void testComposeEntryWithFields() {
+		DefaultLogComposer composer = new DefaultLogComposer(new TimestampRenderer(TimeZone.getTimeZone("UTC")));
+		LogFields fields = new LogFields(1).add("user", 42)
+		                                   .add("amount", 12.5)
+		                                   .add("retry", false)
+		                                   .add("note", "two words")
+		                                   .add("none", (String) null)
+		                                   .add("min", Long.MIN_VALUE);
+
+		LogBuffer buffer = new LogBuffer();
+		composer.composeEntry(buffer, 1524470400123L, LogLevel.Info, new Thread("main"), "Tag", "charged", fields, null);
+		assertEquals("2018-04-23 08:00:00.123+0000 Info/main/Tag: charged user=42 amount=12.5 retry=false note=\"two words\" none=null min=-9223372036854775808\n", buffer.toString());
+	}
+}
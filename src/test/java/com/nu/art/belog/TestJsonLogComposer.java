@@ -0,0 +1,68 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.nu.art.belog.consts.LogLevel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestJsonLogComposer {
+
+	@Test
+	public void testComposeEntry() {
+		JsonLogComposer composer = new JsonLogComposer();
+		LogFields fields = new LogFields().add("user", 42)
+		                                  .add("amount", 12.5)
+		                                  .add("retry", true)
+		                                  .add("note", "quote \" and \u05D0");
+
+		LogBuffer buffer = new LogBuffer();
+		composer.composeEntry(buffer, 1524470400123L, LogLevel.Info, new Thread("main"), "Tag", "line\nbreak", fields, new RuntimeException("failed"));
+		composer.composeEntry(buffer, 1524470400124L, LogLevel.Debug, new Thread("main"), "Tag", null, null, null);
+
+		String[] lines = buffer.toString().split("\n");
+		assertEquals(2, lines.length);
+
+		JsonObject entry = new JsonParser().parse(lines[0]).getAsJsonObject();
+		assertEquals(1524470400123L, entry.get("timestamp").getAsLong());
+		assertEquals("Info", entry.get("level").getAsString());
+		assertEquals("main", entry.get("thread").getAsString());
+		assertEquals("Tag", entry.get("tag").getAsString());
+		assertEquals("line\nbreak", entry.get("message").getAsString());
+		assertTrue(entry.get("stackTrace").getAsString().contains("failed"));
+
+		JsonObject jsonFields = entry.getAsJsonObject("fields");
+		assertEquals(42, jsonFields.get("user").getAsLong());
+		assertEquals(12.5, jsonFields.get("amount").getAsDouble(), 0);
+		assertTrue(jsonFields.get("retry").getAsBoolean());
+		assertEquals("quote \" and \u05D0", jsonFields.get("note").getAsString());
+
+		entry = new JsonParser().parse(lines[1]).getAsJsonObject();
+		assertEquals("Debug", entry.get("level").getAsString());
+		assertFalse(entry.has("message"));
+		assertFalse(entry.has("fields"));
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.BeConfig.Rule;
+import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.belog.interfaces.LogComposer;
+import com.nu.art.belog.loggers.FileLogger.Config_FileLogger;
+import com.nu.art.belog.loggers.FileLogger.OverflowPolicy;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static com.nu.art.belog.loggers.JavaLogger.Config_FastJavaLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestLoggerMetrics {
+
+	private static class GatedComposer
+		implements LogComposer {
+
+		private final CountDownLatch gate;
+
+		GatedComposer(CountDownLatch gate) {
+			this.gate = gate;
+		}
+
+		@Override
+		public String composeEntry(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			return message + "\n";
+		}
+	}
+
+	private static void log(String message) {
+		BeLogged.getInstance().log(LogLevel.Info, "metrics", message, null, null);
+	}
+
+	@Test
+	public void testWritesAndDrops()
+		throws Exception {
+		File folder = File.createTempFile("metrics", "");
+		folder.delete();
+		folder.mkdirs();
+
+		Config_FileLogger config = new Config_FileLogger().setFolder(folder.getAbsolutePath())
+		                                                  .setFileName("app")
+		                                                  .setQueueCapacity(2)
+		                                                  .setOverflowPolicy(OverflowPolicy.DropNewest);
+		config.setKey("metrics");
+		BeLogged.getInstance().setConfig(new BeConfig().setRules(new Rule().setLoggerKeys("metrics")).setLoggersConfig(config));
+		BeLogged.getInstance().setMinLogLevel(LogLevel.Verbose);
+		BeLogged.getInstance().setMaxLogLevel(LogLevel.Assert);
+
+		LoggerClient client = BeLogged.getInstance().getClient("metrics");
+		CountDownLatch gate = new CountDownLatch(1);
+		client.setComposer(new GatedComposer(gate));
+		BeLoggedMetrics beLoggedMetrics = BeLogged.getInstance().getMetrics();
+		long routed = beLoggedMetrics.getRoutedCount();
+
+		// the writer is stuck on the first entry, the second fills the queue and the rest are dropped
+		log("h\u00e9llo first");
+		while (client.getMetrics().getQueueDepth() > 0) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+		log("h\u00e9llo second");
+		log("third");
+		log("fourth");
+
+		LoggerMetrics metrics = client.getMetrics();
+		assertEquals(4, beLoggedMetrics.getRoutedCount() - routed);
+		assertEquals(4, metrics.getAcceptedCount());
+		assertEquals(2, metrics.getDroppedCount());
+		assertEquals(0, metrics.getWrittenCount());
+		assertEquals(1, metrics.getQueueDepth());
+
+		// the same values over JMX
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName clientName = new ObjectName("com.nu.art.belog:type=LoggerClient,key=" + ObjectName.quote("metrics"));
+		assertEquals("metrics", server.getAttribute(clientName, "Key"));
+		assertEquals(4L, server.getAttribute(clientName, "AcceptedCount"));
+		assertEquals(2L, server.getAttribute(clientName, "DroppedCount"));
+		assertEquals(0L, server.getAttribute(clientName, "WrittenCount"));
+		assertEquals(0L, server.getAttribute(clientName, "ErrorCount"));
+		assertEquals(1, server.getAttribute(clientName, "QueueDepth"));
+
+		ObjectName beLoggedName = new ObjectName("com.nu.art.belog:type=BeLogged");
+		assertEquals(beLoggedMetrics.getRoutedCount(), server.getAttribute(beLoggedName, "RoutedCount"));
+		assertEquals(beLoggedMetrics.getFilteredCount(), server.getAttribute(beLoggedName, "FilteredCount"));
+
+		// both entries along with the drop report are written when the client is disposed
+		gate.countDown();
+		BeLogged.getInstance().setConfig(Config_FastJavaLogger);
+		assertFalse("a removed client is no longer exposed", server.isRegistered(clientName));
+
+		File file = new File(folder, "app-00.txt");
+		assertEquals(3, metrics.getWrittenCount());
+		assertEquals("bytes, not chars", file.length(), metrics.getBytesWritten());
+		assertTrue(metrics.getBytesWritten() > readChars(file));
+		assertEquals(2, metrics.getDroppedCount());
+		assertEquals(0, metrics.getErrorCount());
+		assertTrue(metrics.getLatencyMaxMicros() > 0);
+	}
+
+	/**
+	 * @return The number of chars in the file.
+	 */
+	private static long readChars(File file)
+		throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), "UTF-8").length();
+	}
+}
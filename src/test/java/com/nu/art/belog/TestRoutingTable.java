@@ -0,0 +1,183 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.BeConfig.LimitScope;
+import com.nu.art.belog.BeConfig.Rule;
+import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.belog.loggers.JavaLogger;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestRoutingTable {
+
+	@Test
+	public void testRouting() {
+		HashMap<String, LoggerClient> clients = createClients(3);
+		Rule errors = new Rule().setLoggerKeys("client-2", "client-0").setMinLevel(LogLevel.Error);
+		Rule all = new Rule().setLoggerKeys("client-0", "client-1", "missing");
+		Rule tagged = new Rule().setLoggerKeys("client-2").setTag("net.*");
+
+		RoutingTable routingTable = new RoutingTable(new Rule[]{
+			errors,
+			all,
+			tagged
+		}, clients, new BeLoggedMetrics());
+
+		// in rule order, each client once
+		assertArrayEquals(new LoggerClient[]{
+			clients.get("client-2"),
+			clients.get("client-0"),
+			clients.get("client-1")
+		}, routingTable.route(LogLevel.Error, "network", "main"));
+
+		assertArrayEquals(new LoggerClient[]{
+			clients.get("client-0"),
+			clients.get("client-1")
+		}, routingTable.route(LogLevel.Info, "ui", "main"));
+
+		assertArrayEquals(new LoggerClient[]{
+			clients.get("client-0"),
+			clients.get("client-1"),
+			clients.get("client-2")
+		}, routingTable.route(LogLevel.Info, "network", "main"));
+	}
+
+	@Test
+	public void testAwaitQuiescence()
+		throws InterruptedException {
+		final RoutingTable routingTable = new RoutingTable(new Rule[0], createClients(1), new BeLoggedMetrics());
+		assertTrue(routingTable.awaitQuiescence(0));
+
+		routingTable.enter();
+		routingTable.enter();
+		routingTable.exit();
+		assertFalse("a thread is still routing", routingTable.awaitQuiescence(20));
+
+		// exits from another thread count just the same
+		Thread exiting = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				routingTable.exit();
+			}
+		});
+		exiting.start();
+		assertTrue(routingTable.awaitQuiescence(5000));
+		exiting.join();
+	}
+
+	@Test
+	public void testManyClients() {
+		HashMap<String, LoggerClient> clients = createClients(100);
+		String[] keys = clients.keySet().toArray(new String[0]);
+		RoutingTable routingTable = new RoutingTable(new Rule[]{
+			new Rule().setLoggerKeys(keys),
+			new Rule().setLoggerKeys(keys)
+		}, clients, new BeLoggedMetrics());
+
+		LoggerClient[] routed = routingTable.route(LogLevel.Debug, "tag", "main");
+		assertEquals(100, routed.length);
+		for (int i = 0; i < keys.length; i++) {
+			assertEquals(clients.get(keys[i]), routed[i]);
+		}
+	}
+
+	@Test
+	public void testLimitedRoute() {
+		HashMap<String, LoggerClient> clients = createClients(3);
+		RoutingTable routingTable = new RoutingTable(new Rule[]{
+			new Rule().setLoggerKeys("client-0").setMaxPerSecond(10),
+			new Rule().setLoggerKeys("client-0", "client-1").setMinLevel(LogLevel.Warning),
+			new Rule().setLoggerKeys("client-2").setSampleRate(2).setTag("net.*")
+		}, clients, new BeLoggedMetrics());
+
+		// every client is subject to the limits of the first rule routing to it
+		RoutingTable.Route route = routingTable.getRoute(LogLevel.Error, "network", "main");
+		assertEquals(3, route.groups.length);
+		assertArrayEquals(new LoggerClient[]{clients.get("client-0")}, route.groups[0]);
+		assertArrayEquals(new LoggerClient[]{clients.get("client-1")}, route.groups[1]);
+		assertArrayEquals(new LoggerClient[]{clients.get("client-2")}, route.groups[2]);
+		assertNull(route.limiters[1]);
+
+		// limiters are per tag, and shared across levels
+		assertSame(route.limiters[0], routingTable.getRoute(LogLevel.Info, "network", "main").limiters[0]);
+		assertNotSame(route.limiters[0], routingTable.getRoute(LogLevel.Error, "ui", "main").limiters[0]);
+
+		RoutingTable unlimited = new RoutingTable(new Rule[]{new Rule().setLoggerKeys("client-0")}, clients, new BeLoggedMetrics());
+		assertNull(unlimited.getRoute(LogLevel.Info, "network", "main").limiters);
+	}
+
+	@Test
+	public void testSuppressedSummaries() {
+		HashMap<String, LoggerClient> clients = createClients(2);
+		RoutingTable routingTable = new RoutingTable(new Rule[]{
+			new Rule().setLoggerKeys("client-0").setMaxPerSecond(1),
+			new Rule().setLoggerKeys("client-1").setMaxPerSecond(1).setLimitPer(LimitScope.Thread)
+		}, clients, new BeLoggedMetrics());
+		assertTrue(routingTable.hasLimits());
+
+		RoutingTable.Route route = routingTable.getRoute(LogLevel.Info, "burst", "main");
+		for (int i = 0; i < 3; i++) {
+			route.limiters[0].tryAcquire();
+			route.limiters[1].tryAcquire();
+		}
+
+		// nothing is due before the report interval is over, unless forced
+		assertTrue(routingTable.takeSuppressedSummaries(false).isEmpty());
+		List<RoutingTable.SuppressedSummary> summaries = routingTable.takeSuppressedSummaries(true);
+		assertEquals(2, summaries.size());
+		for (RoutingTable.SuppressedSummary summary : summaries) {
+			if (summary.clients[0] == clients.get("client-0")) {
+				assertEquals("burst", summary.tag);
+				assertEquals("2 entries suppressed by rule limits (max 1/s, tag: burst)", summary.message);
+			} else {
+				assertArrayEquals(new LoggerClient[]{clients.get("client-1")}, summary.clients);
+				assertEquals("2 entries suppressed by rule limits (max 1/s, thread: main)", summary.message);
+			}
+		}
+		assertTrue(routingTable.takeSuppressedSummaries(true).isEmpty());
+
+		assertFalse(new RoutingTable(new Rule[]{new Rule().setLoggerKeys("client-0")}, clients, new BeLoggedMetrics()).hasLimits());
+	}
+
+	private static HashMap<String, LoggerClient> createClients(int count) {
+		HashMap<String, LoggerClient> clients = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			clients.put("client-" + i, new JavaLogger());
+		}
+		return clients;
+	}
+}
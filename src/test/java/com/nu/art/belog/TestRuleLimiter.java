@@ -0,0 +1,106 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestRuleLimiter {
+
+	@Test
+	public void testSampling() {
+		RuleLimiter limiter = new RuleLimiter("test", 0, 10);
+		int passed = 0;
+		for (int i = 0; i < 1000; i++) {
+			if (limiter.tryAcquire())
+				passed++;
+		}
+
+		assertEquals(100, passed);
+	}
+
+	private static class ManualClock
+		implements RuleLimiter.Clock {
+
+		private long now = 1000;
+
+		@Override
+		public long nanoTime() {
+			return now;
+		}
+
+		void advance(long duration, TimeUnit unit) {
+			now += unit.toNanos(duration);
+		}
+	}
+
+	@Test
+	public void testRateLimit() {
+		ManualClock clock = new ManualClock();
+		RuleLimiter limiter = new RuleLimiter("test", 100, 0, clock);
+
+		// the burst is a second's worth of entries
+		for (int i = 0; i < 100; i++) {
+			assertTrue("entry " + i, limiter.tryAcquire());
+		}
+		assertFalse(limiter.tryAcquire());
+
+		// a token is refilled every 10ms
+		clock.advance(9, TimeUnit.MILLISECONDS);
+		assertFalse(limiter.tryAcquire());
+		clock.advance(1, TimeUnit.MILLISECONDS);
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+
+		// no summary before the report interval elapsed
+		assertNull(limiter.takeSummary());
+		clock.advance(10, TimeUnit.SECONDS);
+		assertEquals("3 entries suppressed by rule limits (test)", limiter.takeSummary());
+		assertNull(limiter.takeSummary());
+
+		// an idle limiter fills up to the burst again, no more
+		int passed = 0;
+		for (int i = 0; i < 1000; i++) {
+			if (limiter.tryAcquire())
+				passed++;
+		}
+		assertEquals(100, passed);
+	}
+
+	@Test
+	public void testForcedSummary() {
+		ManualClock clock = new ManualClock();
+		RuleLimiter limiter = new RuleLimiter("test", 1, 0, clock);
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+
+		// a limiter about to be replaced reports before its interval is over
+		assertNull(limiter.takeSummary(false));
+		assertEquals("2 entries suppressed by rule limits (test)", limiter.takeSummary(true));
+		assertNull(limiter.takeSummary(true));
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestStackTraceRenderer {
+
+	@Test
+	public void testSameAsPrintStackTrace() {
+		Exception exception = createException("outer");
+		exception.addSuppressed(createException("suppressed"));
+
+		StringWriter expected = new StringWriter();
+		exception.printStackTrace(new PrintWriter(expected));
+		assertEquals(expected.toString().replace(System.lineSeparator(), "\n"), new StackTraceRenderer().render(exception));
+	}
+
+	@Test
+	public void testCache() {
+		StackTraceRenderer renderer = new StackTraceRenderer();
+		String[] rendered = new String[2];
+		for (int i = 0; i < rendered.length; i++) {
+			rendered[i] = renderer.render(createException("storm"));
+		}
+
+		assertSame(rendered[0], rendered[1]);
+		assertNotSame(rendered[0], renderer.render(createException("other")));
+	}
+
+	@Test
+	public void testLimits() {
+		Exception exception = createException("outer");
+		String[] lines = new StackTraceRenderer(2, 0, 0).render(exception).split("\n");
+		assertEquals(5, lines.length);
+		assertEquals("\tat " + exception.getStackTrace()[1], lines[2]);
+		assertEquals("\t... " + (exception.getStackTrace().length - 2) + " more", lines[3]);
+		assertEquals("Caused by: ... 2 more causes", lines[4]);
+	}
+
+	@Test
+	public void testCircularCause() {
+		Exception first = new Exception("first");
+		Exception second = new Exception("second", first);
+		first.initCause(second);
+		assertTrue(new StackTraceRenderer().render(first).contains("Caused by: [CIRCULAR REFERENCE: java.lang.Exception: first]"));
+	}
+
+	private static Exception createException(String message) {
+		return new IllegalStateException(message, new RuntimeException("cause", new IllegalArgumentException("root")));
+	}
+}
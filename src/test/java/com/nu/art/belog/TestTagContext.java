@@ -0,0 +1,120 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog;
+
+import com.nu.art.belog.TagContext.RepeatedEntry;
+import com.nu.art.belog.consts.LogLevel;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestTagContext {
+
+	@Test
+	public void testCollapseRepeats() {
+		TagContext tagContext = new TagContext("tag");
+		assertNull(tagContext.collapse(LogLevel.Warning, "retrying %d", 1000, 100));
+		assertSame(RepeatedEntry.Repeat, tagContext.collapse(LogLevel.Warning, "retrying %d", 1010, 100));
+		assertSame(RepeatedEntry.Repeat, tagContext.collapse(LogLevel.Warning, "retrying %d", 1050, 100));
+
+		// another level ends the run
+		RepeatedEntry repeated = tagContext.collapse(LogLevel.Error, "retrying %d", 1060, 100);
+		assertEquals(LogLevel.Warning, repeated.level);
+		assertEquals(2, repeated.repeats);
+
+		assertSame(RepeatedEntry.Repeat, tagContext.collapse(LogLevel.Error, "retrying %d", 1070, 100));
+
+		// so does the window
+		repeated = tagContext.collapse(LogLevel.Error, "retrying %d", 1160, 100);
+		assertEquals(LogLevel.Error, repeated.level);
+		assertEquals(1, repeated.repeats);
+
+		assertNull(tagContext.collapse(LogLevel.Error, "done", 1170, 100));
+	}
+
+	@Test
+	public void testFlushTrailingBurst() {
+		TagContext tagContext = new TagContext("tag");
+		assertNull(tagContext.collapse(LogLevel.Warning, "retrying %d", 1000, 100));
+		assertSame(RepeatedEntry.Repeat, tagContext.collapse(LogLevel.Warning, "retrying %d", 1010, 100));
+		assertSame(RepeatedEntry.Repeat, tagContext.collapse(LogLevel.Warning, "retrying %d", 1020, 100));
+
+		// within the window the run may still go on
+		assertNull(tagContext.flushRepeats(1050, 100));
+
+		RepeatedEntry repeated = tagContext.flushRepeats(1100, 100);
+		assertEquals(LogLevel.Warning, repeated.level);
+		assertEquals(2, repeated.repeats);
+		assertNull(tagContext.flushRepeats(1200, 100));
+
+		// a flushed run is not reported again by the next entry
+		assertNull(tagContext.collapse(LogLevel.Warning, "retrying %d", 1110, 100));
+
+		// a window of 0 ends the run regardless of its age
+		assertSame(RepeatedEntry.Repeat, tagContext.collapse(LogLevel.Warning, "retrying %d", 1120, 100));
+		assertEquals(1, tagContext.flushRepeats(1120, 0).repeats);
+	}
+
+	@Test
+	public void testConcurrentCollapse()
+		throws InterruptedException {
+		final int threadsCount = 8;
+		final int entriesPerThread = 100000;
+		final TagContext tagContext = new TagContext("tag");
+		final AtomicInteger collapsed = new AtomicInteger();
+		final AtomicInteger reported = new AtomicInteger();
+
+		Thread[] threads = new Thread[threadsCount];
+		for (int i = 0; i < threadsCount; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < entriesPerThread; j++) {
+						// runs keep being ended by the other message
+						String message = j % 64 == 0 ? "other" : "retrying";
+						RepeatedEntry repeated = tagContext.collapse(LogLevel.Warning, message, 0, Long.MAX_VALUE);
+						if (repeated == RepeatedEntry.Repeat)
+							collapsed.incrementAndGet();
+						else if (repeated != null)
+							reported.addAndGet(repeated.repeats);
+					}
+				}
+			});
+			threads[i].start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		RepeatedEntry repeated = tagContext.flushRepeats(0, 0);
+		if (repeated != null)
+			reported.addAndGet(repeated.repeats);
+
+		assertTrue(collapsed.get() > 0);
+		assertEquals("every repeat is reported exactly once", collapsed.get(), reported.get());
+	}
+}
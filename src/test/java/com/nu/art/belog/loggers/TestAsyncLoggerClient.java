@@ -0,0 +1,172 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.JsonLogComposer;
+import com.nu.art.belog.LoggerClient;
+import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.belog.interfaces.LogComposer;
+import com.nu.art.belog.loggers.JavaLogger.Config_JavaLogger;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestAsyncLoggerClient {
+
+	private static class RecordingClient
+		extends LoggerClient<Config_JavaLogger> {
+
+		private final List<String> messages = new CopyOnWriteArrayList<>();
+		private final CountDownLatch gate;
+		private volatile boolean disposed;
+
+		RecordingClient(CountDownLatch gate) {
+			this.gate = gate;
+			setConfig((Config_JavaLogger) new Config_JavaLogger().setKey("recording").setAsyncQueueSize(4));
+		}
+
+		@Override
+		protected void log(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			messages.add(message);
+		}
+
+		@Override
+		protected void dispose() {
+			disposed = true;
+		}
+
+		LogComposer getComposer() {
+			return composer;
+		}
+	}
+
+	@Test
+	public void testComposerAndDaemonWriter() {
+		RecordingClient client = new RecordingClient(new CountDownLatch(0));
+		AsyncLoggerClient<Config_JavaLogger> asyncClient = new AsyncLoggerClient<>(client);
+		JsonLogComposer composer = new JsonLogComposer();
+		asyncClient.setComposer(composer);
+		assertSame("the decorated client composes the entries", composer, client.getComposer());
+
+		asyncClient.init();
+		Thread writerThread = null;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().equals("Async logger - recording"))
+				writerThread = thread;
+		}
+		assertTrue(writerThread.isDaemon());
+		asyncClient.dispose();
+	}
+
+	@Test
+	public void testOrderAndDrainOnDispose() {
+		CountDownLatch gate = new CountDownLatch(1);
+		RecordingClient client = new RecordingClient(gate);
+		AsyncLoggerClient<Config_JavaLogger> asyncClient = new AsyncLoggerClient<>(client);
+		asyncClient.init();
+
+		asyncClient.log(0, LogLevel.Info, Thread.currentThread(), "tag", "first", null);
+		asyncClient.log(0, LogLevel.Info, Thread.currentThread(), "tag", "%s", new Object[]{"second"}, null);
+		assertEquals("the logging thread does not wait for the client", 0, client.messages.size());
+
+		gate.countDown();
+		asyncClient.dispose();
+		assertTrue(client.disposed);
+		assertEquals(2, client.messages.size());
+		assertEquals("first", client.messages.get(0));
+		assertEquals("second", client.messages.get(1));
+	}
+
+	@Test
+	public void testDropWhenFull()
+		throws InterruptedException {
+		CountDownLatch gate = new CountDownLatch(1);
+		RecordingClient client = new RecordingClient(gate);
+		AsyncLoggerClient<Config_JavaLogger> asyncClient = new AsyncLoggerClient<>(client);
+		asyncClient.init();
+
+		asyncClient.log(0, LogLevel.Info, Thread.currentThread(), "tag", "blocking", null);
+		while (asyncClient.getQueueDepth() > 0) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+
+		// the writer is stuck on the first entry, which holds on to its slot until it is written
+		for (int i = 0; i < 10; i++) {
+			asyncClient.log(0, LogLevel.Info, Thread.currentThread(), "tag", "entry-" + i, null);
+		}
+
+		gate.countDown();
+		asyncClient.dispose();
+		assertEquals(7, asyncClient.getDroppedCount());
+		assertEquals(7, asyncClient.getMetrics().getDroppedCount());
+		assertEquals(5, client.messages.size());
+		assertEquals("blocking", client.messages.get(0));
+		assertEquals("7 entries dropped, async queue was full", client.messages.get(1));
+		assertEquals("entry-2", client.messages.get(4));
+	}
+
+	/**
+	 * Logs through a slow client that is never disposed, and exits while the entries are still queued.
+	 */
+	public static class ExitingApplication {
+
+		public static void main(String[] args) {
+			JavaLogger console = new JavaLogger();
+			console.setConfig((Config_JavaLogger) new Config_JavaLogger().setKey("console").setAsyncQueueSize(16));
+			AsyncLoggerClient<Config_JavaLogger> asyncClient = new AsyncLoggerClient<>(console);
+			asyncClient.setComposer(new LogComposer() {
+				@Override
+				public String composeEntry(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+					try {
+						Thread.sleep(50);
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+					return message + "\n";
+				}
+			});
+			asyncClient.init();
+			for (int i = 0; i < 5; i++) {
+				asyncClient.log(0, LogLevel.Info, Thread.currentThread(), "tag", "entry-" + i, null);
+			}
+		}
+	}
+
+	@Test
+	public void testDrainedOnExit()
+		throws IOException, InterruptedException {
+		String output = TestJavaLogger.runApplication(ExitingApplication.class);
+		assertTrue(output, output.contains("entry-4\n"));
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.DefaultLogComposer;
+import com.nu.art.belog.LogBuffer;
+import com.nu.art.belog.consts.LogLevel;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestBinaryLogFormat {
+
+	@Test
+	public void testRoundTrip()
+		throws IOException {
+		BinaryLogEncoder encoder = new BinaryLogEncoder();
+		DefaultLogComposer composer = new DefaultLogComposer();
+		LogBuffer binary = new LogBuffer();
+		LogBuffer expected = new LogBuffer();
+
+		long timestamp = 1524470400123L;
+		String[] threads = {
+			"main",
+			"worker-\u05D0"
+		};
+		for (int i = 0; i < 100; i++) {
+			// timestamps may go backwards between threads
+			timestamp += i % 3 == 0 ? -2 : 5;
+			LogLevel level = LogLevel.values()[i % LogLevel.values().length];
+			String thread = threads[i % threads.length];
+			String tag = "Tag-" + i % 7;
+			String message = i % 11 == 0 ? null : "message " + i;
+			String stackTrace = i % 13 == 0 ? "java.lang.RuntimeException: " + i + "\n\tat somewhere" : null;
+
+			if (i == 50) {
+				// a new segment, appended to the same stream
+				encoder.reset();
+			}
+
+			encoder.encode(binary, timestamp, level, thread, tag, message, stackTrace);
+			composer.composeEntry(expected, timestamp, level, thread, tag, message, stackTrace);
+		}
+
+		assertTrue("binary should be smaller than text", binary.size() < expected.size());
+
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		BinaryLogDecoder.decode(new ByteArrayInputStream(binary.array(), 0, binary.size()), decoded);
+		assertEquals(expected.toString(), decoded.toString("UTF-8"));
+	}
+
+	@Test
+	public void testTruncatedTail()
+		throws IOException {
+		BinaryLogEncoder encoder = new BinaryLogEncoder();
+		LogBuffer binary = new LogBuffer();
+		encoder.encode(binary, 1000, LogLevel.Info, "main", "Tag", "first", null);
+		int firstEntryEnd = binary.size();
+		encoder.encode(binary, 2000, LogLevel.Info, "main", "Tag", "second", null);
+
+		byte[] truncated = Arrays.copyOf(binary.array(), binary.size() - 3);
+		BinaryLogDecoder decoder = new BinaryLogDecoder(new ByteArrayInputStream(truncated));
+		assertTrue(decoder.next());
+		assertEquals("first", decoder.getMessage());
+		assertFalse(decoder.next());
+
+		// the zero padding of a memory mapped segment
+		byte[] padded = Arrays.copyOf(binary.array(), firstEntryEnd + 100);
+		Arrays.fill(padded, firstEntryEnd, padded.length, (byte) 0);
+		decoder = new BinaryLogDecoder(new ByteArrayInputStream(padded));
+		assertTrue(decoder.next());
+		assertFalse(decoder.next());
+	}
+
+	@Test
+	public void testDecodeLiveGzipSegment()
+		throws IOException {
+		BinaryLogEncoder encoder = new BinaryLogEncoder();
+		DefaultLogComposer composer = new DefaultLogComposer();
+		LogBuffer binary = new LogBuffer();
+		LogBuffer expected = new LogBuffer();
+		for (int i = 0; i < 10; i++) {
+			encoder.encode(binary, 1000 + i, LogLevel.Info, "main", "Tag", "entry " + i, null);
+			composer.composeEntry(expected, 1000 + i, LogLevel.Info, "main", "Tag", "entry " + i, null);
+		}
+
+		// sync flushed but not finished, like the segment the logger is still writing
+		File segment = File.createTempFile("live", ".blog.gz");
+		GZIPOutputStream outputStream = new GZIPOutputStream(new FileOutputStream(segment), true);
+		binary.writeTo(outputStream);
+		outputStream.flush();
+
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		PrintStream originalOut = System.out;
+		System.setOut(new PrintStream(decoded, true));
+		try {
+			BinaryLogDecoder.main(new String[]{segment.getAbsolutePath()});
+		} finally {
+			System.setOut(originalOut);
+			outputStream.close();
+		}
+		assertEquals(expected.toString(), decoded.toString("UTF-8"));
+	}
+}
@@ -0,0 +1,586 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.belog.interfaces.LogComposer;
+import com.nu.art.belog.loggers.FileLogger.Compression;
+import com.nu.art.belog.loggers.FileLogger.Config_FileLogger;
+import com.nu.art.belog.loggers.FileLogger.OverflowPolicy;
+import com.nu.art.belog.loggers.FileLogger.RotationInterval;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestFileLogger {
+
+	private static class GatedComposer
+		implements LogComposer {
+
+		private final CountDownLatch gate;
+
+		GatedComposer(CountDownLatch gate) {
+			this.gate = gate;
+		}
+
+		@Override
+		public String composeEntry(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			return message + "\n";
+		}
+	}
+
+	private static class ManualClock
+		implements FileLogger.Clock {
+
+		private volatile long now = 1000;
+
+		@Override
+		public long nanoTime() {
+			return now;
+		}
+
+		void advance(long duration, TimeUnit unit) {
+			now += unit.toNanos(duration);
+		}
+	}
+
+	static File createFolder(String prefix)
+		throws IOException {
+		File folder = File.createTempFile(prefix, "");
+		folder.delete();
+		folder.mkdirs();
+		return folder;
+	}
+
+	static FileLogger createLogger(Config_FileLogger config, LogComposer composer) {
+		FileLogger logger = new FileLogger();
+		if (config.key == null)
+			config.setKey("test");
+		logger.setConfig(config);
+		logger.setComposer(composer);
+		logger.init();
+		return logger;
+	}
+
+	static void awaitEmptyQueue(FileLogger logger)
+		throws InterruptedException {
+		while (logger.getQueueDepth() > 0) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+	}
+
+	/**
+	 * Waits for the writer to write all it can of what was logged so far.
+	 */
+	private static void awaitIdle(FileLogger logger)
+		throws InterruptedException {
+		// the first may report the writer idle from before the last entry was logged, the second cannot
+		final CountDownLatch idle = new CountDownLatch(2);
+		logger.idleListener = new Runnable() {
+			@Override
+			public void run() {
+				idle.countDown();
+			}
+		};
+		assertTrue("the writer is idle", idle.await(5, TimeUnit.SECONDS));
+		logger.idleListener = null;
+	}
+
+	@Test
+	public void testWriterDiesWhileRingIsFull()
+		throws IOException, InterruptedException {
+		File folder = createFolder("writer-dies");
+		CountDownLatch gate = new CountDownLatch(1);
+		final FileLogger logger = createLogger(new Config_FileLogger().setFolder(folder.getAbsolutePath()).setFileName("app").setQueueCapacity(2), new GatedComposer(gate));
+
+		// the writer is stuck on the first entry, which holds on to its slot until it is written
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "first", null);
+		awaitEmptyQueue(logger);
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "second", null);
+
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "third", null);
+			}
+		});
+		producer.start();
+
+		logger.disable(new IOException("simulated"));
+		gate.countDown();
+		producer.join(5000);
+		assertFalse("a producer waiting for room must not outlive the writer", producer.isAlive());
+
+		// nothing is waited for once the writer is gone
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "fourth", null);
+		logger.dispose();
+	}
+
+	@Test
+	public void testOverflowDropNewest()
+		throws IOException, InterruptedException {
+		File folder = createFolder("drop-newest");
+		CountDownLatch gate = new CountDownLatch(1);
+		FileLogger logger = createFullLogger(new Config_FileLogger().setFolder(folder.getAbsolutePath()).setOverflowPolicy(OverflowPolicy.DropNewest), gate);
+
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "third", null);
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "fourth", null);
+		assertEquals(2, logger.getDroppedCount(OverflowPolicy.DropNewest));
+
+		gate.countDown();
+		logger.dispose();
+		assertLines(folder, "2 entries dropped, queue was full (DropNewest: 2)", "first", "second");
+	}
+
+	@Test
+	public void testOverflowDropOldest()
+		throws IOException, InterruptedException {
+		File folder = createFolder("drop-oldest");
+		CountDownLatch gate = new CountDownLatch(1);
+		FileLogger logger = createFullLogger(new Config_FileLogger().setFolder(folder.getAbsolutePath()).setOverflowPolicy(OverflowPolicy.DropOldest), gate);
+
+		// the writer holds on to the slot the next claim needs, evicting "second" would make no room
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "third", null);
+		assertEquals(1, logger.getDroppedCount(OverflowPolicy.DropOldest));
+		assertEquals(1, logger.getQueueDepth());
+
+		gate.countDown();
+		awaitEmptyQueue(logger);
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "fourth", null);
+		logger.dispose();
+		assertLines(folder, "1 entries dropped, queue was full (DropOldest: 1)", "first", "second", "fourth");
+	}
+
+	@Test
+	public void testOverflowDropOldestEvictsOnce()
+		throws IOException, InterruptedException {
+		File folder = createFolder("drop-oldest-once");
+		CountDownLatch gate = new CountDownLatch(1);
+		FileLogger logger = createLogger(new Config_FileLogger().setFolder(folder.getAbsolutePath())
+		                                                        .setFileName("app")
+		                                                        .setQueueCapacity(8)
+		                                                        .setOverflowPolicy(OverflowPolicy.DropOldest), new GatedComposer(gate));
+
+		// the writer is stuck on "first", it gets to the rest only once the gate opens
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "first", null);
+		awaitEmptyQueue(logger);
+
+		// the slot of "first" is needed once the ring wraps, so evicting cannot make room for any of these
+		for (int i = 1; i <= 7; i++) {
+			logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "entry-" + i, null);
+		}
+		for (int i = 0; i < 3; i++) {
+			logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "overflow-" + i, null);
+		}
+		assertEquals(3, logger.getDroppedCount(OverflowPolicy.DropOldest));
+		assertEquals("the queued entries are kept", 7, logger.getQueueDepth());
+
+		gate.countDown();
+		logger.dispose();
+		assertLines(folder, "3 entries dropped, queue was full (DropOldest: 3)", "first", "entry-1", "entry-2", "entry-3", "entry-4", "entry-5", "entry-6", "entry-7");
+	}
+
+	@Test
+	public void testOverflowBlockWithTimeout()
+		throws IOException, InterruptedException {
+		File folder = createFolder("block-timeout");
+		CountDownLatch gate = new CountDownLatch(1);
+		FileLogger logger = createFullLogger(new Config_FileLogger().setFolder(folder.getAbsolutePath()).setBlockTimeout(100), gate);
+
+		long started = System.nanoTime();
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "third", null);
+		assertTrue("waited for room before dropping", System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(1, logger.getDroppedCount(OverflowPolicy.Block));
+
+		// room is made well within the timeout
+		gate.countDown();
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "fourth", null);
+		logger.dispose();
+		assertEquals(1, logger.getDroppedCount(OverflowPolicy.Block));
+		assertLines(folder, "1 entries dropped, queue was full (Block: 1)", "first", "second", "fourth");
+	}
+
+	@Test
+	public void testLanesFollowConfigUpdates()
+		throws IOException, InterruptedException {
+		File folder = createFolder("lanes-update");
+		CountDownLatch gate = new CountDownLatch(1);
+		Config_FileLogger config = new Config_FileLogger().setFolder(folder.getAbsolutePath())
+		                                                  .setFileName("app")
+		                                                  .setLanes(2)
+		                                                  .setQueueCapacity(2)
+		                                                  .setBlockTimeout(TimeUnit.SECONDS.toMillis(10));
+		FileLogger logger = createFullLogger(config, gate);
+
+		Config_FileLogger updated = config.clone().setBlockTimeout(50);
+		updated.setKey(config.key);
+		logger.setConfig(updated);
+		logger.onConfigUpdated();
+
+		// the lane of this thread waits for room by the updated timeout
+		long started = System.nanoTime();
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "third", null);
+		assertTrue("waited by the updated timeout", System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+		assertEquals(1, logger.getDroppedCount(OverflowPolicy.Block));
+
+		gate.countDown();
+		logger.dispose();
+	}
+
+	@Test
+	public void testBatchFlushedOnSize()
+		throws IOException, InterruptedException {
+		File folder = createFolder("batch-size");
+		FileLogger logger = createLogger(new Config_FileLogger().setFolder(folder.getAbsolutePath())
+		                                                        .setFileName("app")
+		                                                        .setBatchSize(3)
+		                                                        .setFlushDelay(TimeUnit.MINUTES.toMillis(1)), new GatedComposer(new CountDownLatch(0)));
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "first", null);
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "second", null);
+		awaitIdle(logger);
+		assertEquals("the batch is not full yet", 0, readLines(folder).size());
+
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "third", null);
+		awaitIdle(logger);
+		assertEquals(Arrays.asList("first", "second", "third"), readLines(folder));
+		logger.dispose();
+	}
+
+	@Test
+	public void testBatchFlushedOnDelay()
+		throws IOException, InterruptedException {
+		File folder = createFolder("batch-delay");
+		FileLogger logger = createLogger(new Config_FileLogger().setFolder(folder.getAbsolutePath())
+		                                                        .setFileName("app")
+		                                                        .setBatchSize(100)
+		                                                        .setFlushDelay(500), new GatedComposer(new CountDownLatch(0)));
+		ManualClock clock = new ManualClock();
+		logger.clock = clock;
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "first", null);
+		awaitIdle(logger);
+		assertEquals("the delay did not start yet", 0, readLines(folder).size());
+
+		clock.advance(499, TimeUnit.MILLISECONDS);
+		awaitIdle(logger);
+		assertEquals("the delay did not elapse yet", 0, readLines(folder).size());
+
+		clock.advance(1, TimeUnit.MILLISECONDS);
+		awaitIdle(logger);
+		assertEquals(Arrays.asList("first"), readLines(folder));
+		logger.dispose();
+	}
+
+	@Test
+	public void testPartialBatchWrittenOnDispose()
+		throws IOException {
+		File folder = createFolder("batch-dispose");
+		FileLogger logger = createLogger(new Config_FileLogger().setFolder(folder.getAbsolutePath())
+		                                                        .setFileName("app")
+		                                                        .setBatchSize(100)
+		                                                        .setFlushDelay(TimeUnit.MINUTES.toMillis(1)), new GatedComposer(new CountDownLatch(0)));
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "first", null);
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "second", null);
+		logger.dispose();
+		assertEquals(Arrays.asList("first", "second"), readLines(folder));
+	}
+
+	private static List<String> readLines(File folder)
+		throws IOException {
+		return Files.readAllLines(new File(folder, "app-00.txt").toPath(), Charset.forName("UTF-8"));
+	}
+
+	@Test
+	public void testGzipSegment()
+		throws IOException {
+		File folder = createFolder("gzip");
+		FileLogger logger = createLogger(new Config_FileLogger().setFolder(folder.getAbsolutePath())
+		                                                        .setFileName("app")
+		                                                        .setCompression(Compression.Gzip), new GatedComposer(new CountDownLatch(0)));
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "first", null);
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "second", null);
+		logger.dispose();
+
+		assertFalse(new File(folder, "app-00.txt").exists());
+		assertEquals(Arrays.asList("first", "second"), readGzipLines(new File(folder, "app-00.txt.gz")));
+	}
+
+	@Test
+	public void testLiveGzipSegment()
+		throws IOException, InterruptedException {
+		File folder = createFolder("gzip-live");
+		FileLogger logger = createLogger(new Config_FileLogger().setFolder(folder.getAbsolutePath())
+		                                                        .setFileName("app")
+		                                                        .setCompression(Compression.Gzip), new GatedComposer(new CountDownLatch(0)));
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "first", null);
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "second", null);
+
+		// the writer sync flushes once it runs out of entries, the segment is not finished yet
+		awaitIdle(logger);
+		File segment = new File(folder, "app-00.txt.gz");
+		assertEquals(Arrays.asList("first", "second"), readGzipLines(segment));
+		logger.dispose();
+	}
+
+	@Test
+	public void testGzipRotation()
+		throws IOException, InterruptedException {
+		File folder = createFolder("gzip-rotation");
+		FileLogger logger = createLogger(new Config_FileLogger().setFolder(folder.getAbsolutePath())
+		                                                        .setFileName("app")
+		                                                        .setSize(10 * 1024)
+		                                                        .setCompression(Compression.Gzip), new GatedComposer(new CountDownLatch(0)));
+		int count = 2000;
+		for (int i = 0; i < count; i++) {
+			logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "entry-" + i, null);
+		}
+		logger.dispose();
+		assertArchived(folder);
+
+		// the rotated segments are kept compressed as they are, oldest first
+		ArrayList<String> lines = new ArrayList<>();
+		for (int i = 9; i >= 0; i--) {
+			File segment = new File(folder, "app-0" + i + ".txt.gz");
+			if (segment.exists())
+				lines.addAll(readGzipLines(segment));
+		}
+		assertFalse(new File(folder, "app-01.zip").exists());
+		assertTrue(new File(folder, "app-01.txt.gz").exists());
+		assertEquals(count, lines.size());
+		assertEquals("entry-0", lines.get(0));
+		assertEquals("entry-" + (count - 1), lines.get(count - 1));
+	}
+
+	@Test
+	public void testEntriesDuringRotation()
+		throws IOException, InterruptedException {
+		File folder = createFolder("rotation");
+		final FileLogger logger = createLogger(new Config_FileLogger().setFolder(folder.getAbsolutePath())
+		                                                              .setFileName("app")
+		                                                              .setSize(10 * 1024)
+		                                                              .setCompression(Compression.Gzip), new GatedComposer(new CountDownLatch(0)));
+
+		// about 80kb, the producers keep logging while the writer rotates
+		final int producersCount = 4;
+		final int entriesPerProducer = 500;
+		Thread[] producers = new Thread[producersCount];
+		for (int i = 0; i < producersCount; i++) {
+			final int producer = i;
+			producers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < entriesPerProducer; j++) {
+						logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", producer + ":" + j + ":padding-the-entry-to-forty", null);
+					}
+				}
+			});
+			producers[i].start();
+		}
+
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		logger.dispose();
+		assertArchived(folder);
+
+		// every entry is in exactly one segment, in order
+		int[] next = new int[producersCount];
+		int count = 0;
+		for (int i = 9; i >= 0; i--) {
+			File segment = new File(folder, "app-0" + i + ".txt.gz");
+			if (!segment.exists())
+				continue;
+
+			for (String line : readGzipLines(segment)) {
+				String[] parts = line.split(":");
+				int producer = Integer.parseInt(parts[0]);
+				assertEquals(line, next[producer]++, Integer.parseInt(parts[1]));
+				count++;
+			}
+		}
+		assertEquals(producersCount * entriesPerProducer, count);
+		assertTrue("rotated", new File(folder, "app-01.txt.gz").exists());
+	}
+
+	@Test
+	public void testRotationFailureDisables()
+		throws IOException, InterruptedException {
+		File folder = createFolder("rotation-failure");
+		Config_FileLogger config = new Config_FileLogger().setFolder(folder.getAbsolutePath()).setFileName("app").setSize(10 * 1024);
+		config.setKey("rotation-failure");
+		FileLogger logger = createLogger(config, new GatedComposer(new CountDownLatch(0)));
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "first", null);
+		awaitEmptyQueue(logger);
+
+		// the segment can no longer be moved aside once its folder is gone
+		for (File file : folder.listFiles()) {
+			assertTrue(file.delete());
+		}
+		assertTrue(folder.delete());
+
+		StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 1024; i++) {
+			large.append("0123456789");
+		}
+		Thread writer = findThread("File logger - rotation-failure");
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", large.toString(), null);
+		writer.join(5000);
+		assertFalse("the writer stopped", writer.isAlive());
+		assertTrue(logger.getMetrics().getErrorCount() > 0);
+
+		// nothing is queued, or waited for, once disabled
+		for (int i = 0; i < 100; i++) {
+			logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "ignored", null);
+		}
+		assertEquals(0, logger.getQueueDepth());
+
+		long started = System.nanoTime();
+		logger.dispose();
+		assertTrue("the writer is already gone", System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1));
+	}
+
+	/**
+	 * Rotated segments are archived in the background, until then they are pending. Disposing waits for them.
+	 */
+	private static void assertArchived(File folder) {
+		for (String name : folder.list()) {
+			assertFalse(name, name.contains("-pending-"));
+		}
+	}
+
+	private static Thread findThread(String name) {
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().equals(name))
+				return thread;
+		}
+		throw new AssertionError("No thread named: " + name);
+	}
+
+	/**
+	 * Reads what can be read of a gzip file, a live segment ends with its last sync flush.
+	 */
+	private static List<String> readGzipLines(File file)
+		throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		InputStream inputStream = new FileInputStream(file);
+		try {
+			inputStream = new GZIPInputStream(inputStream);
+			byte[] bytes = new byte[1024];
+			for (int read; (read = inputStream.read(bytes)) != -1; ) {
+				content.write(bytes, 0, read);
+			}
+		} catch (EOFException ignore) {
+		} finally {
+			inputStream.close();
+		}
+
+		String text = new String(content.toByteArray(), Charset.forName("UTF-8"));
+		return text.isEmpty() ? new ArrayList<String>() : new ArrayList<>(Arrays.asList(text.split("\n")));
+	}
+
+	/**
+	 * @return A logger whose writer is stuck composing the entry "first", with "second" filling its queue.
+	 */
+	private static FileLogger createFullLogger(Config_FileLogger config, CountDownLatch gate)
+		throws InterruptedException {
+		FileLogger logger = createLogger(config.setFileName("app").setQueueCapacity(2), new GatedComposer(gate));
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "first", null);
+		awaitEmptyQueue(logger);
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "second", null);
+		return logger;
+	}
+
+	/**
+	 * The drop report is written with the first entry after the report interval, or on dispose, whichever comes first.
+	 */
+	private static void assertLines(File folder, String dropReport, String... lines)
+		throws IOException {
+		List<String> written = readLines(folder);
+		assertTrue("missing drop report in: " + written, written.remove(dropReport));
+		assertEquals(Arrays.asList(lines), written);
+	}
+
+	@Test
+	public void testNextRotation() {
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(2018, Calendar.APRIL, 30, 23, 59, 59);
+		long timestamp = calendar.getTimeInMillis() + 999;
+
+		calendar.set(2018, Calendar.MAY, 1, 0, 0, 0);
+		assertEquals(calendar.getTimeInMillis(), FileLogger.getNextRotation(RotationInterval.Hourly, timestamp));
+		assertEquals(calendar.getTimeInMillis(), FileLogger.getNextRotation(RotationInterval.Daily, timestamp));
+
+		// a boundary belongs to the interval it starts
+		long midnight = calendar.getTimeInMillis();
+		calendar.set(2018, Calendar.MAY, 1, 1, 0, 0);
+		assertEquals(calendar.getTimeInMillis(), FileLogger.getNextRotation(RotationInterval.Hourly, midnight));
+		calendar.set(2018, Calendar.MAY, 2, 0, 0, 0);
+		assertEquals(calendar.getTimeInMillis(), FileLogger.getNextRotation(RotationInterval.Daily, midnight));
+
+		assertEquals(0, FileLogger.getNextRotation(RotationInterval.None, timestamp));
+	}
+
+	@Test
+	public void testArchiveRetention() {
+		ArchiveRetention retention = new ArchiveRetention(4);
+		retention.set(1, 100);
+		retention.set(2, 50);
+		assertEquals(150, retention.getTotal());
+		assertEquals(2, retention.getOldest());
+
+		retention.shift();
+		retention.set(1, 10);
+		assertEquals(160, retention.getTotal());
+		assertEquals(3, retention.getOldest());
+
+		// the archive at the last index is gone
+		retention.shift();
+		assertEquals(110, retention.getTotal());
+		assertEquals(3, retention.getOldest());
+
+		retention.set(3, 0);
+		assertEquals(10, retention.getTotal());
+		assertEquals(2, retention.getOldest());
+	}
+}
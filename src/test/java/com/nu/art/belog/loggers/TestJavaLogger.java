@@ -0,0 +1,136 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.LogFields;
+import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.belog.interfaces.LogComposer;
+import com.nu.art.belog.loggers.JavaLogger.Config_JavaLogger;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestJavaLogger {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final LogComposer MessageComposer = new LogComposer() {
+		@Override
+		public String composeEntry(long timestamp, LogLevel level, Thread thread, String tag, String message, Throwable t) {
+			return message + "\n";
+		}
+	};
+
+	private static JavaLogger createLogger(Config_JavaLogger config) {
+		JavaLogger logger = new JavaLogger();
+		config.setKey("console");
+		logger.setConfig(config);
+		logger.setComposer(MessageComposer);
+		logger.init();
+		return logger;
+	}
+
+	@Test
+	public void testPrintCountsBytes() {
+		JavaLogger logger = createLogger(new Config_JavaLogger());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		PrintStream originalOut = System.out;
+		PrintStream originalErr = System.err;
+		System.setOut(new PrintStream(out, true));
+		System.setErr(new PrintStream(err, true));
+		try {
+			logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "h\u00e9llo", null);
+			logger.log(0, LogLevel.Error, Thread.currentThread(), "tag", "%s failed", new Object[]{"\u20ac"}, null);
+			logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "fields", new LogFields().add("count", 3), null);
+		} finally {
+			System.setOut(originalOut);
+			System.setErr(originalErr);
+		}
+
+		assertEquals("h\u00e9llo\nfields count=3\n", new String(out.toByteArray(), UTF_8));
+		assertEquals("\u20ac failed\n", new String(err.toByteArray(), UTF_8));
+		assertEquals(3, logger.getMetrics().getWrittenCount());
+		assertEquals("bytes, not chars", out.size() + err.size(), logger.getMetrics().getBytesWritten());
+	}
+
+	@Test
+	public void testBufferedCountsBytes() {
+		JavaLogger logger = createLogger(new Config_JavaLogger().setBuffered(true));
+		Thread writerThread = null;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().equals("Console logger"))
+				writerThread = thread;
+		}
+		assertTrue(writerThread.isDaemon());
+
+		logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "h\u00e9llo", null);
+		logger.dispose();
+		assertEquals(1, logger.getMetrics().getWrittenCount());
+		assertEquals("h\u00e9llo\n".getBytes(UTF_8).length, logger.getMetrics().getBytesWritten());
+	}
+
+	/**
+	 * Logs to a buffered console that is never disposed, and exits while the entries are still queued.
+	 */
+	public static class ExitingApplication {
+
+		public static void main(String[] args) {
+			JavaLogger logger = createLogger(new Config_JavaLogger().setBuffered(true).setBatchSize(100).setFlushDelay(TimeUnit.MINUTES.toMillis(1)));
+			logger.log(0, LogLevel.Info, Thread.currentThread(), "tag", "queued", null);
+			logger.log(0, LogLevel.Error, Thread.currentThread(), "tag", "last words", null);
+		}
+	}
+
+	@Test
+	public void testDrainedOnExit()
+		throws IOException, InterruptedException {
+		String output = runApplication(ExitingApplication.class);
+		assertTrue(output, output.contains("queued\n"));
+		assertTrue(output, output.contains("last words\n"));
+	}
+
+	/**
+	 * @return What the application printed to its standard output and error.
+	 */
+	static String runApplication(Class<?> application)
+		throws IOException, InterruptedException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), application.getName()).redirectErrorStream(true).start();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		InputStream in = process.getInputStream();
+		byte[] buffer = new byte[1024];
+		for (int read; (read = in.read(buffer)) != -1; ) {
+			output.write(buffer, 0, read);
+		}
+		assertEquals(0, process.waitFor());
+		return new String(output.toByteArray(), UTF_8);
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.DefaultLogComposer;
+import com.nu.art.belog.LogBuffer;
+import com.nu.art.belog.TimestampRenderer;
+import com.nu.art.belog.consts.LogLevel;
+import com.nu.art.belog.loggers.FileLogger.FileFormat;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.TimeZone;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestLaneMergeReader {
+
+	private final DefaultLogComposer composer = new DefaultLogComposer(new TimestampRenderer(TimeZone.getTimeZone("UTC")));
+
+	@Test
+	public void testMergeTextLanes()
+		throws IOException {
+		File folder = File.createTempFile("lanes", "");
+		folder.delete();
+		folder.mkdirs();
+
+		// lane 0 was rotated once, its older entries are in the archive
+		ZipOutputStream archive = new ZipOutputStream(new FileOutputStream(new File(folder, "app-lane0-01.zip")));
+		archive.putNextEntry(new ZipEntry("app-lane0-00.txt"));
+		write(archive, compose(1000, "first", null), compose(3000, "third", null));
+		archive.close();
+
+		write(new FileOutputStream(new File(folder, "app-lane0-00.txt")), compose(5000, "fifth", null));
+		write(new FileOutputStream(new File(folder, "app-lane1-00.txt")), compose(2000, "second", "java.lang.RuntimeException\n\tat somewhere"), compose(4000, "fourth", null));
+
+		LaneMergeReader reader = LaneMergeReader.open(folder, "app", 2, FileFormat.Text);
+		String[] expected = {
+			"first",
+			"second",
+			"third",
+			"fourth",
+			"fifth"
+		};
+
+		LogBuffer buffer = new LogBuffer();
+		for (int i = 0; i < expected.length; i++) {
+			assertTrue(reader.next());
+			assertEquals((i + 1) * 1000, reader.getTimestamp());
+			assertEquals(i % 2, reader.getLane());
+
+			buffer.reset();
+			reader.appendTo(buffer);
+			assertTrue(buffer.toString().contains(expected[i]));
+			if (i == 1)
+				assertTrue("stack trace lines belong to their entry", buffer.toString().endsWith("\tat somewhere\n"));
+		}
+
+		assertFalse(reader.next());
+		reader.close();
+	}
+
+	private String compose(long timestamp, String message, String stackTrace) {
+		LogBuffer buffer = new LogBuffer();
+		composer.composeEntry(buffer, timestamp, LogLevel.Info, "main", "Tag", message, stackTrace);
+		return buffer.toString();
+	}
+
+	private static void write(OutputStream outputStream, String... entries)
+		throws IOException {
+		for (String entry : entries) {
+			outputStream.write(entry.getBytes("UTF-8"));
+		}
+
+		if (!(outputStream instanceof ZipOutputStream))
+			outputStream.close();
+	}
+}
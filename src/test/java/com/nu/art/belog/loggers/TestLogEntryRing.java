@@ -0,0 +1,182 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.consts.LogLevel;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestLogEntryRing {
+
+	@Test
+	public void testCapacityAndOrder() {
+		LogEntryRing ring = new LogEntryRing(3);
+		assertEquals(4, ring.getCapacity());
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(ring.offer(i, LogLevel.Info, Thread.currentThread(), "tag", "message-" + i, null, null, null));
+		}
+		assertFalse(ring.offer(4, LogLevel.Info, Thread.currentThread(), "tag", "message-4", null, null, null));
+
+		LogEntry entry = ring.poll();
+		assertEquals("message-0", entry.message);
+		ring.release(entry);
+		assertNull(entry.message);
+
+		assertTrue(ring.offer(4, LogLevel.Info, Thread.currentThread(), "tag", "message-4", null, null, null));
+		for (int i = 1; i <= 4; i++) {
+			entry = ring.poll();
+			assertEquals(i, entry.timestamp);
+			ring.release(entry);
+		}
+
+		assertNull(ring.poll());
+	}
+
+	@Test
+	public void testEvictOldest() {
+		LogEntryRing ring = new LogEntryRing(2);
+		assertFalse(ring.evictOldest());
+
+		assertTrue(ring.offer(0, LogLevel.Info, Thread.currentThread(), "tag", "message-0", null, null, null));
+		assertTrue(ring.offer(1, LogLevel.Info, Thread.currentThread(), "tag", "message-1", null, null, null));
+		assertFalse(ring.offer(2, LogLevel.Info, Thread.currentThread(), "tag", "message-2", null, null, null, 1000));
+
+		assertTrue(ring.evictOldest());
+		assertTrue(ring.offer(2, LogLevel.Info, Thread.currentThread(), "tag", "message-2", null, null, null));
+
+		LogEntry entry = ring.poll();
+		assertEquals("message-1", entry.message);
+		ring.release(entry);
+
+		entry = ring.poll();
+		assertEquals("message-2", entry.message);
+		ring.release(entry);
+
+		assertNull(ring.poll());
+	}
+
+	@Test
+	public void testEvictOldestWhileConsumerHoldsTheSlot() {
+		LogEntryRing ring = new LogEntryRing(4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(ring.offer(i, LogLevel.Info, Thread.currentThread(), "tag", "message-" + i, null, null, null));
+		}
+
+		// the next claim needs the slot of the polled entry, evicting another one makes no room
+		LogEntry held = ring.poll();
+		assertFalse(ring.evictOldest());
+		assertEquals(3, ring.size());
+
+		ring.release(held);
+		assertTrue(ring.offer(4, LogLevel.Info, Thread.currentThread(), "tag", "message-4", null, null, null));
+		assertTrue(ring.evictOldest());
+		assertEquals("message-2", ring.poll().message);
+	}
+
+	@Test
+	public void testCloseReleasesProducers()
+		throws InterruptedException {
+		final LogEntryRing ring = new LogEntryRing(2);
+		assertTrue(ring.offer(0, LogLevel.Info, Thread.currentThread(), "tag", "message-0", null, null, null));
+		assertTrue(ring.offer(1, LogLevel.Info, Thread.currentThread(), "tag", "message-1", null, null, null));
+
+		final AtomicBoolean[] results = {new AtomicBoolean(true), new AtomicBoolean(true)};
+		Thread blocking = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				results[0].set(ring.put(2, LogLevel.Info, Thread.currentThread(), "tag", "message-2", null, null, null));
+			}
+		});
+		Thread timed = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				results[1].set(ring.offer(3, LogLevel.Info, Thread.currentThread(), "tag", "message-3", null, null, null, TimeUnit.MINUTES.toNanos(1)));
+			}
+		});
+		blocking.start();
+		timed.start();
+
+		// no consumer will ever make room again
+		ring.close();
+		blocking.join(5000);
+		timed.join(5000);
+		assertFalse(blocking.isAlive());
+		assertFalse(timed.isAlive());
+		assertFalse(results[0].get());
+		assertFalse(results[1].get());
+		assertFalse(ring.offer(4, LogLevel.Info, Thread.currentThread(), "tag", "message-4", null, null, null));
+	}
+
+	@Test
+	public void testMultipleProducers()
+		throws InterruptedException {
+		final int producersCount = 8;
+		final int entriesPerProducer = 100000;
+		final LogEntryRing ring = new LogEntryRing(64);
+
+		Thread[] producers = new Thread[producersCount];
+		for (int i = 0; i < producersCount; i++) {
+			producers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < entriesPerProducer; j++) {
+						ring.put(j, LogLevel.Info, Thread.currentThread(), "tag", null, null, null, null);
+					}
+				}
+			}, "producer-" + i);
+			producers[i].start();
+		}
+
+		long[] lastTimestamps = new long[producersCount];
+		for (int i = 0; i < producersCount; i++) {
+			lastTimestamps[i] = -1;
+		}
+
+		int consumed = 0;
+		while (consumed < producersCount * entriesPerProducer) {
+			LogEntry entry = ring.poll();
+			if (entry == null) {
+				ring.awaitEntries();
+				continue;
+			}
+
+			int producer = Integer.parseInt(entry.thread.getName().substring("producer-".length()));
+			assertEquals(lastTimestamps[producer] + 1, entry.timestamp);
+			lastTimestamps[producer] = entry.timestamp;
+			ring.release(entry);
+			consumed++;
+		}
+
+		for (Thread producer : producers) {
+			producer.join();
+		}
+
+		assertNull(ring.poll());
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.consts.LogLevel;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestLogIndex {
+
+	private static final int EntrySize = 100;
+
+	@Test
+	public void testRanges()
+		throws IOException {
+		File segment = File.createTempFile("segment", ".txt");
+		assertNull(LogIndex.read(segment));
+
+		// 1000 entries of 100 bytes make 4 blocks of up to 328 entries, timestamps increase with the entries
+		LogIndexWriter writer = new LogIndexWriter(segment, false);
+		for (int i = 0; i < 1000; i++) {
+			LogLevel level = i == 500 ? LogLevel.Error : LogLevel.Info;
+			writer.onEntry(i * EntrySize, 1000 + i, level, i < 900 ? "Tag" : "Other");
+		}
+		writer.close(1000 * EntrySize);
+
+		LogIndex index = LogIndex.read(segment);
+		long length = 1000 * EntrySize;
+		long blockLength = 328 * EntrySize;
+
+		assertArrayEquals(new long[]{
+			0,
+			length
+		}, index.getRanges(new LogQuery(), length));
+
+		assertArrayEquals("only the block of the time range", new long[]{
+			blockLength,
+			2 * blockLength
+		}, index.getRanges(new LogQuery().setTimeRange(1000 + 400, 1000 + 450), length));
+
+		assertArrayEquals("only the block with an error", new long[]{
+			blockLength,
+			2 * blockLength
+		}, index.getRanges(new LogQuery().setMinLevel(LogLevel.Error), length));
+
+		assertArrayEquals("only the last blocks have the other tag", new long[]{
+			2 * blockLength,
+			length
+		}, index.getRanges(new LogQuery().setTag("Other"), length));
+
+		assertEquals("nothing can match", 0, index.getRanges(new LogQuery().setTimeRange(0, 999), length).length);
+
+		assertArrayEquals("whatever was written after the index is always read", new long[]{
+			2 * blockLength,
+			length + 500
+		}, index.getRanges(new LogQuery().setTag("Other"), length + 500));
+
+		LogIndex.getIndexFile(segment).delete();
+		segment.delete();
+	}
+}
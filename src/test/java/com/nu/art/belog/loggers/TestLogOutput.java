@@ -0,0 +1,99 @@
+/*
+ * belog is an extendable infrastructure to manage and customize
+ * your application output.
+ *
+ * Copyright (C) 2018  Adam van der Kruk aka TacB0sS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nu.art.belog.loggers;
+
+import com.nu.art.belog.LogBuffer;
+import com.nu.art.belog.loggers.FileLogger.Compression;
+import com.nu.art.belog.loggers.FileLogger.OutputMode;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestLogOutput {
+
+	private static final long SegmentSize = 10 * 1024;
+
+	@Test
+	public void testChannelRoundTrip()
+		throws IOException {
+		assertRoundTrip(OutputMode.Channel);
+	}
+
+	@Test
+	public void testMappedRoundTrip()
+		throws IOException {
+		assertRoundTrip(OutputMode.Mapped);
+	}
+
+	@Test
+	public void testMappedTrimsPadding()
+		throws IOException {
+		File file = File.createTempFile("padded", ".txt");
+		FileOutputStream outputStream = new FileOutputStream(file);
+		outputStream.write("left by a crash\n".getBytes("UTF-8"));
+		// more padding than a single read chunk
+		outputStream.write(new byte[3 * 4096 + 100]);
+		outputStream.close();
+
+		LogOutput output = LogOutput.create(OutputMode.Mapped, Compression.None, SegmentSize);
+		assertEquals(16, output.open(file));
+		output.write(new LogBuffer().append("appended\n"));
+		output.close();
+
+		assertEquals("left by a crash\nappended\n", read(file));
+	}
+
+	private static void assertRoundTrip(OutputMode mode)
+		throws IOException {
+		File file = File.createTempFile(mode.name(), ".txt");
+
+		LogOutput output = LogOutput.create(mode, Compression.None, SegmentSize);
+		assertEquals(0, output.open(file));
+		output.write(new LogBuffer().append("first\n"));
+		// more than a mapping, so the mapped output has to map again
+		StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			large.append("entry-").append(i).append('\n');
+		}
+		output.write(new LogBuffer().append(large.toString()));
+		output.close();
+		assertEquals(6 + large.length(), file.length());
+
+		// an existing segment is appended to
+		output = LogOutput.create(mode, Compression.None, SegmentSize);
+		assertEquals(file.length(), output.open(file));
+		output.write(new LogBuffer().append("second\n"));
+		output.close();
+
+		assertEquals("first\n" + large + "second\n", read(file));
+	}
+
+	private static String read(File file)
+		throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+	}
+}